@@ -0,0 +1,157 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import io.github.mike10004.extensibleffdriver.AddonInstallRequest;
+import io.github.mike10004.extensibleffdriver.AddonPersistence;
+import io.github.mike10004.extensibleffdriver.ExtensibleFirefoxDriver;
+import io.github.mike10004.extensibleffdriver.InstalledAddon;
+import io.github.mike10004.nanochamp.repackaged.fi.iki.elonen.NanoHTTPD;
+import io.github.mike10004.nanochamp.server.NanoControl;
+import io.github.mike10004.nanochamp.server.NanoResponse;
+import io.github.mike10004.nanochamp.server.NanoServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.W3CHttpCommandCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks of addon install requests: populating the command parameters,
+ * the codec's in-memory serialization of a base-64 string, and installation
+ * through the driver's addon command executor, which streams the zip bytes.
+ * The driver talks to a fake geckodriver on the loopback interface that reads
+ * and discards the request body, so the installation benchmarks include the
+ * cost of sending the request but not of installing the addon.
+ */
+@State(Scope.Benchmark)
+public class AddonInstallEncodingBenchmark {
+
+    private static final String SESSION_ID = "benchmark";
+    private static final String ADDON_ID = "benchmark@antiprint.mike10004.github.io";
+    private static final String INSTALL_COMMAND = "installAddon";
+
+    @Param({"1", "10", "50"})
+    public int payloadMegabytes;
+
+    private W3CHttpCommandCodec codec;
+    private String zipBytesBase64;
+    private ByteSource zipBytes;
+    private NanoControl geckodriver;
+    private ExtensibleFirefoxDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] bytes = new byte[payloadMegabytes * 1024 * 1024];
+        new Random(payloadMegabytes).nextBytes(bytes);
+        zipBytes = ByteSource.wrap(bytes);
+        zipBytesBase64 = Base64.getEncoder().encodeToString(bytes);
+        codec = new W3CHttpCommandCodec();
+        codec.defineCommand(INSTALL_COMMAND, HttpMethod.POST, "/session/:sessionId/moz/addon/install");
+        geckodriver = fakeGeckodriver().startServer();
+        driver = new ExtensibleFirefoxDriver(new FakeGeckoDriverService(geckodriver.getListeningPort()), new FirefoxOptions());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try {
+            driver.quit();
+        } finally {
+            geckodriver.close();
+        }
+    }
+
+    private static NanoServer fakeGeckodriver() {
+        return NanoServer.builder()
+                .session(session -> {
+                    try {
+                        discardBody(session);
+                    } catch (IOException e) {
+                        return NanoResponse.status(500).plainTextUtf8(e.toString());
+                    }
+                    String uri = session.getUri();
+                    if (session.getMethod() == NanoHTTPD.Method.POST && "/session".equals(uri)) {
+                        return NanoResponse.status(200).jsonUtf8("{\"value\": {\"sessionId\": \"" + SESSION_ID + "\", \"capabilities\": {\"browserName\": \"firefox\"}}}");
+                    }
+                    if (uri.endsWith("/moz/addon/install")) {
+                        return NanoResponse.status(200).jsonUtf8("{\"value\": \"" + ADDON_ID + "\"}");
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                }).build();
+    }
+
+    private static void discardBody(NanoHTTPD.IHTTPSession session) throws IOException {
+        String contentLength = session.getHeaders().get("content-length");
+        if (contentLength != null) {
+            InputStream in = session.getInputStream();
+            ByteStreams.copy(ByteStreams.limit(in, Long.parseLong(contentLength)), ByteStreams.nullOutputStream());
+        }
+    }
+
+    /**
+     * Driver service that does not launch a process, because the fake
+     * geckodriver is already listening on the service port.
+     */
+    private static class FakeGeckoDriverService extends GeckoDriverService {
+
+        public FakeGeckoDriverService(int port) throws IOException {
+            super(new File("geckodriver"), port, ImmutableList.of(), ImmutableMap.of());
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> toParameters_base64() {
+        Map<String, Object> parameters = new HashMap<>();
+        AddonInstallRequest.fromBase64(zipBytesBase64, AddonPersistence.TEMPORARY).toParameters(parameters);
+        return parameters;
+    }
+
+    @Benchmark
+    public HttpRequest codecEncode_base64() {
+        Map<String, Object> parameters = new HashMap<>();
+        AddonInstallRequest.fromBase64(zipBytesBase64, AddonPersistence.TEMPORARY).toParameters(parameters);
+        return codec.encode(new Command(new SessionId(SESSION_ID), INSTALL_COMMAND, parameters));
+    }
+
+    @Benchmark
+    public InstalledAddon install_base64() throws IOException {
+        return driver.installAddon(AddonInstallRequest.fromBase64(zipBytesBase64, AddonPersistence.TEMPORARY));
+    }
+
+    @Benchmark
+    public InstalledAddon install_streaming() throws IOException {
+        return driver.installAddon(AddonInstallRequest.fromByteSource(zipBytes, AddonPersistence.TEMPORARY));
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import io.github.mike10004.antiprint.e2etests.ArchiveDiff;
+import io.github.mike10004.antiprint.e2etests.Tests;
+import io.github.mike10004.antiprint.e2etests.Unzippage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Benchmarks of comparing the extension source directory with an archive of it,
+ * as is done to report the differences when the extension file is outdated.
+ */
+@State(Scope.Benchmark)
+public class ArchiveDiffBenchmark {
+
+    private File zipFile;
+    private Unzippage sources;
+    private Unzippage archive;
+    private Unzippage mappedArchive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File extensionSourcesDir = BenchmarkArchives.getExtensionSourcesDir();
+        zipFile = File.createTempFile("archive-diff-benchmark", ".zip");
+        BenchmarkArchives.zipDirectory(extensionSourcesDir, zipFile);
+        sources = Tests.pseudoUnzippage(extensionSourcesDir.toPath());
+        archive = Unzippage.unzip(zipFile);
+        mappedArchive = Unzippage.map(zipFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        zipFile.delete();
+    }
+
+    @Benchmark
+    public boolean equal() throws IOException {
+        return ArchiveDiff.equal(sources, archive);
+    }
+
+    @Benchmark
+    public boolean equal_archives() throws IOException {
+        return ArchiveDiff.equal(archive, mappedArchive);
+    }
+
+    @Benchmark
+    public ArchiveDiff compare() throws IOException {
+        return ArchiveDiff.compare(sources, archive);
+    }
+
+    @Benchmark
+    public boolean equal_includingDirectoryScan() throws IOException {
+        Unzippage expected = Tests.pseudoUnzippage(BenchmarkArchives.getExtensionSourcesDir().toPath());
+        return ArchiveDiff.equal(expected, archive);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import io.github.mike10004.antiprint.e2etests.Tests;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Static utility methods that create the archives used as benchmark inputs.
+ */
+final class BenchmarkArchives {
+
+    private BenchmarkArchives() {}
+
+    /**
+     * Gets the extension source directory of the antiprint-extension module.
+     * @return the directory
+     */
+    public static File getExtensionSourcesDir() {
+        File extensionSourcesDir = new File(Tests.getParentBaseDir(), "antiprint-extension/src/main/extension");
+        checkState(extensionSourcesDir.isDirectory(), "not a directory: %s", extensionSourcesDir);
+        return extensionSourcesDir;
+    }
+
+    /**
+     * Zips the files in a directory, as the extension module's build does.
+     * @param sourceDir the directory
+     * @param zipFile the zip file to write
+     * @throws IOException on I/O error
+     */
+    public static void zipDirectory(File sourceDir, File zipFile) throws IOException {
+        Path parent = sourceDir.toPath();
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (File file : FileUtils.listFiles(sourceDir, null, true)) {
+                String entryName = FilenameUtils.normalizeNoEndSeparator(parent.relativize(file.toPath()).toString(), true);
+                zout.putNextEntry(new ZipEntry(entryName));
+                Files.copy(file.toPath(), zout);
+                zout.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes a zip file of pseudorandom text-like entries.
+     * @param zipFile the zip file to write
+     * @param entryCount number of file entries
+     * @param entrySize size of each file entry
+     * @throws IOException on I/O error
+     */
+    public static void writeSyntheticZip(File zipFile, int entryCount, int entrySize) throws IOException {
+        Random random = new Random(entryCount);
+        byte[] content = new byte[entrySize];
+        try (OutputStream out = new FileOutputStream(zipFile);
+             ZipOutputStream zout = new ZipOutputStream(out)) {
+            for (int i = 0; i < entryCount; i++) {
+                for (int j = 0; j < content.length; j++) {
+                    content[j] = (byte) ('a' + random.nextInt(16));
+                }
+                zout.putNextEntry(new ZipEntry(String.format("d%d/file%d.js", i % 8, i)));
+                zout.write(content);
+                zout.closeEntry();
+            }
+        }
+    }
+}
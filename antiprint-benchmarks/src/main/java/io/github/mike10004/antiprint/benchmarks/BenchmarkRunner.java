@@ -0,0 +1,33 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so that allocation rate
+ * and allocation per operation are reported alongside the timings. Command
+ * line arguments are interpreted as JMH options, so a subset of benchmarks
+ * may be selected with a regex, e.g. {@code java -jar benchmarks.jar Unzippage}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options commandLineOptions = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .forks(commandLineOptions.getForkCount().orElse(1))
+                .warmupIterations(commandLineOptions.getWarmupIterations().orElse(3))
+                .warmupTime(commandLineOptions.getWarmupTime().orElse(TimeValue.seconds(2)))
+                .measurementIterations(commandLineOptions.getMeasurementIterations().orElse(5))
+                .measurementTime(commandLineOptions.getMeasurementTime().orElse(TimeValue.seconds(2)))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import io.github.mike10004.antiprint.e2etests.ArchiveDiff;
+import io.github.mike10004.antiprint.e2etests.ExtensionFileProvider;
+import io.github.mike10004.antiprint.e2etests.Tests;
+import io.github.mike10004.antiprint.e2etests.Unzippage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Benchmarks of the freshness check that precedes each use of the extension file.
+ * The check is run on a zip of the current extension sources, so it succeeds.
+ * After the first check, the manifest-backed check only stats the files.
+ */
+@State(Scope.Benchmark)
+public class ExtensionUpToDateBenchmark {
+
+    private File zipFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        zipFile = File.createTempFile("extension-up-to-date-benchmark", ".zip");
+        BenchmarkArchives.zipDirectory(BenchmarkArchives.getExtensionSourcesDir(), zipFile);
+        // backdate the zip so that the freshness manifest trusts its modification time
+        Files.setLastModifiedTime(zipFile.toPath(), FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        checkState(ExtensionFileProvider.isUpToDate(zipFile), "expect zip of sources to be up to date");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        zipFile.delete();
+    }
+
+    @Benchmark
+    public boolean isUpToDate() throws IOException {
+        return ExtensionFileProvider.isUpToDate(zipFile);
+    }
+
+    @Benchmark
+    public boolean equalContent() throws IOException {
+        Unzippage expected = Tests.pseudoUnzippage(BenchmarkArchives.getExtensionSourcesDir().toPath());
+        return ArchiveDiff.equal(expected, Unzippage.map(zipFile));
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase;
+import io.github.mike10004.antiprint.e2etests.NavigatorTestCorpus;
+import io.github.mike10004.antiprint.e2etests.Tests;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Benchmarks of loading the navigator test cases, looking up a test case,
+ * and evaluating the predicates of all test cases.
+ * Each predicate is evaluated on the user agent string of its test case, which
+ * exercises every evaluation mode regardless of whether the predicate is satisfied.
+ * The batch evaluation uses a navigator map in which every property has that value.
+ */
+@State(Scope.Benchmark)
+public class NavigatorTestCaseBenchmark {
+
+    private ImmutableList<BrowserFingerprintTestCase> testCases;
+    private ImmutableList<Map<String, String>> actuals;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        testCases = Tests.getNavigatorTestCases();
+        actuals = testCases.stream()
+                .map(testCase -> Maps.toMap(testCase.output.window.navigator.keySet(), key -> testCase.input.userAgent))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    @Benchmark
+    public NavigatorTestCorpus load() throws IOException {
+        return NavigatorTestCorpus.builder().addResource(NavigatorTestCorpus.DEFAULT_RESOURCE).build();
+    }
+
+    @Benchmark
+    public BrowserFingerprintTestCase lookup() {
+        return Tests.getNavigatorTestCase(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX);
+    }
+
+    @Benchmark
+    public void evaluatePredicates(Blackhole blackhole) {
+        for (BrowserFingerprintTestCase testCase : testCases) {
+            String actual = testCase.input.userAgent;
+            for (Map.Entry<String, BrowserFingerprintTestCase.RequiredValue> entry : testCase.output.window.navigator.entrySet()) {
+                blackhole.consume(entry.getValue().asPredicate().test(actual));
+            }
+        }
+    }
+
+    @Benchmark
+    public void evaluateBatch(Blackhole blackhole) {
+        for (int i = 0; i < testCases.size(); i++) {
+            blackhole.consume(testCases.get(i).evaluate(actuals.get(i)));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.mike10004.antiprint.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import io.github.mike10004.antiprint.e2etests.Unzippage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Benchmarks of unzipping an archive from a file versus from a stream, and
+ * of indexing a memory-mapped archive with and without reading every entry.
+ */
+@State(Scope.Benchmark)
+public class UnzippageBenchmark {
+
+    @Param({"16", "256"})
+    public int entryCount;
+
+    @Param({"4096", "65536"})
+    public int entrySize;
+
+    private File zipFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        zipFile = File.createTempFile("unzippage-benchmark", ".zip");
+        BenchmarkArchives.writeSyntheticZip(zipFile, entryCount, entrySize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        zipFile.delete();
+    }
+
+    @Benchmark
+    public Unzippage unzipFile() throws IOException {
+        return Unzippage.unzip(zipFile);
+    }
+
+    @Benchmark
+    public Unzippage unzipStream() throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(zipFile))) {
+            return Unzippage.unzip(in);
+        }
+    }
+
+    @Benchmark
+    public Unzippage mapFile() throws IOException {
+        return Unzippage.map(zipFile);
+    }
+
+    @Benchmark
+    public long mapFileAndReadAll() throws IOException {
+        Unzippage unzippage = Unzippage.map(zipFile);
+        long total = 0;
+        for (String entry : unzippage.fileEntries()) {
+            total += unzippage.getFileBytes(entry).copyTo(ByteStreams.nullOutputStream());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,287 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class that represents the differences between the file entries of two unzippages.
+ * Use {@link #compare(Unzippage, Unzippage)} to compute all differences, or
+ * {@link #equal(Unzippage, Unzippage)} if only equality is of interest.
+ *
+ * <p>Entries present in both unzippages are compared in parallel on a fork-join
+ * pool. Before any bytes are read, entries are compared by size and by CRC-32
+ * checksum where those are known without reading the entries; entries whose
+ * sizes or checksums differ are changed, and entries whose sizes and checksums
+ * are both known and equal are deemed unchanged. Otherwise, entries are compared
+ * byte by byte. In equality mode, the comparison stops at the first difference.
+ */
+public final class ArchiveDiff {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ImmutableSortedSet<String> added;
+    private final ImmutableSortedSet<String> removed;
+    private final ImmutableList<Change> changed;
+
+    private ArchiveDiff(Set<String> added, Set<String> removed, Iterable<Change> changed) {
+        this.added = ImmutableSortedSet.copyOf(added);
+        this.removed = ImmutableSortedSet.copyOf(removed);
+        this.changed = Ordering.natural().onResultOf((Change change) -> change.entry).immutableSortedCopy(changed);
+    }
+
+    /**
+     * Computes the differences between two unzippages on the common fork-join pool.
+     * @param expected the expected unzippage
+     * @param actual the actual unzippage
+     * @return the differences
+     * @throws IOException if reading an entry fails
+     */
+    public static ArchiveDiff compare(Unzippage expected, Unzippage actual) throws IOException {
+        return compare(expected, actual, ForkJoinPool.commonPool());
+    }
+
+    public static ArchiveDiff compare(Unzippage expected, Unzippage actual, ForkJoinPool pool) throws IOException {
+        Set<String> expectedEntries = ImmutableSet.copyOf(expected.fileEntries());
+        Set<String> actualEntries = ImmutableSet.copyOf(actual.fileEntries());
+        ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+        List<String> common = ImmutableList.copyOf(Sets.intersection(expectedEntries, actualEntries));
+        run(pool, new CompareTask(expected, actual, common, 0, common.size(), changes, null));
+        return new ArchiveDiff(Sets.difference(actualEntries, expectedEntries), Sets.difference(expectedEntries, actualEntries), changes);
+    }
+
+    /**
+     * Determines whether two unzippages have the same file entries with the same
+     * contents, using the common fork-join pool. The comparison stops at the first
+     * difference found.
+     * @param a an unzippage
+     * @param b another unzippage
+     * @return true if the file entries are the same
+     * @throws IOException if reading an entry fails
+     */
+    public static boolean equal(Unzippage a, Unzippage b) throws IOException {
+        return equal(a, b, ForkJoinPool.commonPool());
+    }
+
+    public static boolean equal(Unzippage a, Unzippage b, ForkJoinPool pool) throws IOException {
+        Set<String> aEntries = ImmutableSet.copyOf(a.fileEntries());
+        Set<String> bEntries = ImmutableSet.copyOf(b.fileEntries());
+        if (!aEntries.equals(bEntries)) {
+            return false;
+        }
+        AtomicBoolean differenceFound = new AtomicBoolean(false);
+        List<String> common = ImmutableList.copyOf(aEntries);
+        run(pool, new CompareTask(a, b, common, 0, common.size(), null, differenceFound));
+        return !differenceFound.get();
+    }
+
+    private static void run(ForkJoinPool pool, CompareTask task) throws IOException {
+        try {
+            pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class CompareTask extends RecursiveAction {
+
+        private static final int THRESHOLD = 4;
+
+        private final Unzippage expected;
+        private final Unzippage actual;
+        private final List<String> entries;
+        private final int from, to;
+        private final ConcurrentLinkedQueue<Change> changes;
+        private final AtomicBoolean differenceFound;
+
+        /**
+         * Constructs a task. If the changes queue is null, the task is in equality
+         * mode, and only sets the difference flag.
+         */
+        public CompareTask(Unzippage expected, Unzippage actual, List<String> entries, int from, int to,
+                           ConcurrentLinkedQueue<Change> changes, AtomicBoolean differenceFound) {
+            this.expected = expected;
+            this.actual = actual;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.changes = changes;
+            this.differenceFound = differenceFound;
+        }
+
+        private boolean isAborted() {
+            return differenceFound != null && differenceFound.get();
+        }
+
+        @Override
+        protected void compute() {
+            if (isAborted()) {
+                return;
+            }
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CompareTask(expected, actual, entries, from, middle, changes, differenceFound),
+                          new CompareTask(expected, actual, entries, middle, to, changes, differenceFound));
+                return;
+            }
+            for (int i = from; i < to && !isAborted(); i++) {
+                String entry = entries.get(i);
+                try {
+                    compareEntry(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void compareEntry(String entry) throws IOException {
+            ByteSource expectedBytes = expected.getFileBytes(entry);
+            ByteSource actualBytes = actual.getFileBytes(entry);
+            Optional<Long> expectedSize = expectedBytes.sizeIfKnown();
+            Optional<Long> actualSize = actualBytes.sizeIfKnown();
+            OptionalLong expectedCrc = expected.getFileCrc32(entry);
+            OptionalLong actualCrc = actual.getFileCrc32(entry);
+            boolean sizesDiffer = expectedSize.isPresent() && actualSize.isPresent() && !expectedSize.get().equals(actualSize.get());
+            boolean crcsKnown = expectedCrc.isPresent() && actualCrc.isPresent();
+            if (changes == null && (sizesDiffer || (crcsKnown && expectedCrc.getAsLong() != actualCrc.getAsLong()))) {
+                differenceFound.set(true);
+                return;
+            }
+            if (!sizesDiffer && crcsKnown && expectedCrc.getAsLong() == actualCrc.getAsLong() && expectedSize.isPresent() && actualSize.isPresent()) {
+                return;
+            }
+            long offset = firstDifference(expectedBytes, actualBytes);
+            if (offset >= 0) {
+                if (changes == null) {
+                    differenceFound.set(true);
+                } else {
+                    changes.add(new Change(entry, offset, expectedSize.or(-1L), actualSize.or(-1L)));
+                }
+            }
+        }
+
+        /**
+         * Finds the offset of the first byte that differs between two sources. If
+         * one source is a prefix of the other, the offset is the length of the shorter.
+         * @return the offset, or -1 if the contents are equal or the comparison was aborted
+         */
+        private long firstDifference(ByteSource a, ByteSource b) throws IOException {
+            byte[] bufferA = new byte[BUFFER_SIZE], bufferB = new byte[BUFFER_SIZE];
+            long position = 0;
+            try (InputStream inA = a.openStream(); InputStream inB = b.openStream()) {
+                while (!isAborted()) {
+                    int readA = ByteStreams.read(inA, bufferA, 0, BUFFER_SIZE);
+                    int readB = ByteStreams.read(inB, bufferB, 0, BUFFER_SIZE);
+                    int common = Math.min(readA, readB);
+                    for (int i = 0; i < common; i++) {
+                        if (bufferA[i] != bufferB[i]) {
+                            return position + i;
+                        }
+                    }
+                    if (readA != readB) {
+                        return position + common;
+                    }
+                    if (readA < BUFFER_SIZE) {
+                        return -1;
+                    }
+                    position += readA;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public ImmutableSortedSet<String> getAdded() {
+        return added;
+    }
+
+    public ImmutableSortedSet<String> getRemoved() {
+        return removed;
+    }
+
+    public ImmutableList<Change> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveDiff{" +
+                "added=" + added +
+                ", removed=" + removed +
+                ", changed=" + changed +
+                '}';
+    }
+
+    /**
+     * Class that represents an entry whose contents differ.
+     */
+    public static final class Change {
+
+        public final String entry;
+
+        /**
+         * Offset of the first differing byte, or, if the contents of one entry
+         * are a prefix of the other, the length of the shorter.
+         */
+        public final long offset;
+
+        /**
+         * Size of the expected entry, or -1 if not known without reading it.
+         */
+        public final long expectedSize;
+
+        /**
+         * Size of the actual entry, or -1 if not known without reading it.
+         */
+        public final long actualSize;
+
+        public Change(String entry, long offset, long expectedSize, long actualSize) {
+            this.entry = Objects.requireNonNull(entry);
+            this.offset = offset;
+            this.expectedSize = expectedSize;
+            this.actualSize = actualSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Change)) return false;
+            Change change = (Change) o;
+            return offset == change.offset &&
+                    expectedSize == change.expectedSize &&
+                    actualSize == change.actualSize &&
+                    entry.equals(change.entry);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entry, offset, expectedSize, actualSize);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%d", entry, offset);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveDiffTest {
+
+    @Test
+    public void compare() throws Exception {
+        byte[] big = new byte[100_000];
+        new Random(ArchiveDiffTest.class.hashCode()).nextBytes(big);
+        byte[] bigChanged = big.clone();
+        bigChanged[54321] ^= 1;
+        Unzippage expected = unzippage(ImmutableMap.<String, byte[]>builder()
+                .put("same", bytes("same"))
+                .put("big", big)
+                .put("prefix", bytes("abc"))
+                .put("removed", bytes("removed"))
+                .build(), false);
+        Unzippage actual = unzippage(ImmutableMap.<String, byte[]>builder()
+                .put("same", bytes("same"))
+                .put("big", bigChanged)
+                .put("prefix", bytes("abcdef"))
+                .put("added", bytes("added"))
+                .build(), false);
+        ArchiveDiff diff = ArchiveDiff.compare(expected, actual, new ForkJoinPool(4));
+        assertEquals("added", ImmutableSet.of("added"), diff.getAdded());
+        assertEquals("removed", ImmutableSet.of("removed"), diff.getRemoved());
+        assertEquals("changed", ImmutableList.of(
+                new ArchiveDiff.Change("big", 54321, big.length, big.length),
+                new ArchiveDiff.Change("prefix", 3, 3, 6)), diff.getChanged());
+        assertFalse("empty", diff.isEmpty());
+        assertTrue("identity", ArchiveDiff.compare(expected, expected).isEmpty());
+    }
+
+    @Test
+    public void equal() throws Exception {
+        Map<String, byte[]> files = ImmutableMap.of("a", bytes("a"), "b", bytes("bb"), "c", bytes("ccc"));
+        assertTrue("same", ArchiveDiff.equal(unzippage(files, false), unzippage(files, false)));
+        assertFalse("different entries", ArchiveDiff.equal(unzippage(files, false), unzippage(ImmutableMap.of("a", bytes("a")), false)));
+        Map<String, byte[]> changed = ImmutableMap.of("a", bytes("a"), "b", bytes("bX"), "c", bytes("ccc"));
+        assertFalse("different content", ArchiveDiff.equal(unzippage(files, false), unzippage(changed, false)));
+    }
+
+    @Test
+    public void equal_shortCircuits() throws Exception {
+        Map<String, byte[]> files = ImmutableMap.of("a", bytes("a"), "b", bytes("bb"));
+        assertTrue("same size and checksum", ArchiveDiff.equal(unzippage(files, true), unzippage(files, true)));
+        Map<String, byte[]> resized = ImmutableMap.of("a", bytes("a"), "b", bytes("bbb"));
+        assertFalse("different size", ArchiveDiff.equal(unzippage(files, true), unzippage(resized, true)));
+        Map<String, byte[]> changed = ImmutableMap.of("a", bytes("a"), "b", bytes("bX"));
+        assertFalse("different checksum", ArchiveDiff.equal(unzippage(files, true), unzippage(changed, true)));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(UTF_8);
+    }
+
+    /**
+     * Creates an unzippage. If unreadable, the byte sources throw when opened,
+     * but their sizes and checksums are known.
+     */
+    private static Unzippage unzippage(Map<String, byte[]> files, boolean unreadable) {
+        return new Unzippage() {
+            @Override
+            public Iterable<String> fileEntries() {
+                return files.keySet();
+            }
+
+            @Override
+            public Iterable<String> directoryEntries() {
+                return ImmutableList.of();
+            }
+
+            @Override
+            public ByteSource getFileBytes(String fileEntry) {
+                byte[] content = files.get(fileEntry);
+                if (!unreadable) {
+                    return ByteSource.wrap(content);
+                }
+                return new ByteSource() {
+                    @Override
+                    public InputStream openStream() throws IOException {
+                        throw new IOException("unreadable");
+                    }
+
+                    @Override
+                    public com.google.common.base.Optional<Long> sizeIfKnown() {
+                        return com.google.common.base.Optional.of((long) content.length);
+                    }
+                };
+            }
+
+            @Override
+            public OptionalLong getFileCrc32(String fileEntry) {
+                if (!unreadable) {
+                    return OptionalLong.empty();
+                }
+                CRC32 crc = new CRC32();
+                crc.update(files.get(fileEntry));
+                return OptionalLong.of(crc.getValue());
+            }
+        };
+    }
+}
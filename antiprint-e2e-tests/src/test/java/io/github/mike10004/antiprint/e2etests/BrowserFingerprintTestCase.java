@@ -1,8 +1,6 @@
 package io.github.mike10004.antiprint.e2etests;
 
-import com.google.common.io.CharSource;
-import com.google.common.io.Resources;
-import com.google.gson.Gson;
+import com.google.common.collect.ImmutableList;
 import net.sf.uadetector.OperatingSystemFamily;
 import net.sf.uadetector.UserAgentFamily;
 import org.apache.commons.lang3.StringUtils;
@@ -10,21 +8,16 @@ import org.apache.commons.text.StringEscapeUtils;
 import org.junit.Assert;
 
 import javax.annotation.Nullable;
-import java.io.IOException;
-import java.io.Reader;
-import java.net.URL;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkState;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
-class BrowserFingerprintTestCase {
+public class BrowserFingerprintTestCase {
 
     public final Input input;
 
@@ -129,51 +122,80 @@ class BrowserFingerprintTestCase {
         literal,
         absent;
 
-        private static <T> Predicate<T> vacant(boolean allowVacant) {
-            return value -> allowVacant && (value == null || (value instanceof String && (((String)value).isEmpty())));
+        /**
+         * Compiles a requirement into a matcher. Patterns are compiled and
+         * literals interned here, once, rather than on every evaluation.
+         * @param data the requirement data
+         * @param allowVacant true if an absent, null, or empty value satisfies the requirement
+         * @return the matcher
+         */
+        public Predicate<String> toPredicate(String data, boolean allowVacant) {
+            return compile(data, allowVacant);
         }
 
-        public Predicate<String> toPredicate(String data, boolean allowVacant) {
+        RequirementMatcher compile(String data, boolean allowVacant) {
             switch (this) {
                 case absent:
-                    return new NamedPredicate<>("RequiredAbsent{}", Objects::isNull);
+                    return new RequirementMatcher(this, data, false, null);
                 case trivial:
-                    return named(data, x -> Boolean.parseBoolean(data), allowVacant);
-                case regex:
-                    return named(data, x -> x.matches(data), allowVacant);
                 case literal:
-                    return named(data, x -> java.util.Objects.equals(data, x), allowVacant);
+                    return new RequirementMatcher(this, data == null ? null : data.intern(), allowVacant, null);
+                case regex:
+                    return new RequirementMatcher(this, data, allowVacant, Pattern.compile(data));
                 default:
                     throw new RuntimeException("unhandled enum: " + name());
             }
         }
+    }
 
-        private static class NamedPredicate<T> implements Predicate<T> {
+    /**
+     * Compiled form of a requirement. The description is only rendered when
+     * {@link #toString()} is invoked.
+     */
+    static final class RequirementMatcher implements Predicate<String> {
 
-            private final String name;
-            private final Predicate<T> delegate;
+        private final EvalMode mode;
+        @Nullable
+        private final String data;
+        private final boolean allowVacant;
+        @Nullable
+        private final Pattern pattern;
+        private final boolean trivialResult;
 
-            public NamedPredicate(String name, Predicate<T> delegate) {
-                this.name = name;
-                this.delegate = delegate;
-            }
+        private RequirementMatcher(EvalMode mode, @Nullable String data, boolean allowVacant, @Nullable Pattern pattern) {
+            this.mode = mode;
+            this.data = data;
+            this.allowVacant = allowVacant;
+            this.pattern = pattern;
+            this.trivialResult = Boolean.parseBoolean(data);
+        }
 
-            @Override
-            public boolean test(T t) {
-                return delegate.test(t);
+        @Override
+        public boolean test(@Nullable String value) {
+            if (allowVacant && (value == null || value.isEmpty())) {
+                return true;
             }
-
-            @Override
-            public String toString() {
-                return name;
+            switch (mode) {
+                case absent:
+                    return value == null;
+                case trivial:
+                    return trivialResult;
+                case regex:
+                    return value != null && pattern.matcher(value).matches();
+                case literal:
+                    //noinspection StringEquality
+                    return data == value || (data != null && data.equals(value));
+                default:
+                    throw new IllegalStateException("unhandled enum: " + mode);
             }
         }
 
-        private <T> Predicate<T> named(String data, Predicate<T> predicate, boolean allowVacant) {
-            String name = String.format("%s%s{\"%s\"}", StringUtils.capitalize(name()), allowVacant ? "?" : "", StringEscapeUtils.escapeJava(data));
-            Predicate<T> vacant = vacant(allowVacant);
-            predicate = vacant.or(predicate);
-            return new NamedPredicate<>(name, predicate);
+        @Override
+        public String toString() {
+            if (mode == EvalMode.absent) {
+                return "RequiredAbsent{}";
+            }
+            return String.format("%s%s{\"%s\"}", StringUtils.capitalize(mode.name()), allowVacant ? "?" : "", StringEscapeUtils.escapeJava(data));
         }
     }
 
@@ -187,6 +209,13 @@ class BrowserFingerprintTestCase {
         @Nullable
         public final Boolean allowVacant;
 
+        /**
+         * RequirementMatcher compiled on first use. Instances deserialized by Gson do not
+         * pass through a constructor, so this cannot be assigned eagerly.
+         */
+        @Nullable
+        private transient volatile RequirementMatcher matcher;
+
         public RequiredValue(EvalMode mode, String data) {
             this(mode, data, null);
         }
@@ -197,9 +226,23 @@ class BrowserFingerprintTestCase {
             this.allowVacant = allowVacant;
         }
 
+        /**
+         * Gets the compiled matcher for this requirement. The same instance is
+         * returned on every invocation.
+         * @return the matcher
+         */
         public Predicate<String> asPredicate() {
-            checkState(mode != null, "mode is null but data = %s", data);
-            return mode.toPredicate(data, allowVacant != null && allowVacant.booleanValue());
+            return matcher();
+        }
+
+        RequirementMatcher matcher() {
+            RequirementMatcher matcher = this.matcher;
+            if (matcher == null) {
+                checkState(mode != null, "mode is null but data = %s", data);
+                matcher = mode.compile(data, allowVacant != null && allowVacant.booleanValue());
+                this.matcher = matcher;
+            }
+            return matcher;
         }
 
         public void assertCorrect(String message, String actual) {
@@ -226,28 +269,83 @@ class BrowserFingerprintTestCase {
         }
     }
 
-    public static List<BrowserFingerprintTestCase> loadAll() throws IOException {
-        return loadSome(x -> true);
+    /**
+     * Navigator property whose actual value does not satisfy its requirement.
+     */
+    static final class Mismatch {
+
+        public final String key;
+        public final Predicate<String> predicate;
+        @Nullable
+        public final Object actualValue;
+
+        public Mismatch(String key, Predicate<String> predicate, @Nullable Object actualValue) {
+            this.key = key;
+            this.predicate = predicate;
+            this.actualValue = actualValue;
+        }
+
+        public String describe() {
+            String actualValueStr = null;
+            if (actualValue != null) {
+                actualValueStr = '"' + StringEscapeUtils.escapeJava(actualValue.toString()) + '"';
+            }
+            return String.format("%s: predicate=%s; actual=%s", key, predicate, actualValueStr);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Mismatch)) return false;
+            Mismatch that = (Mismatch) o;
+            return key.equals(that.key) &&
+                    predicate.equals(that.predicate) &&
+                    Objects.equals(actualValue, that.actualValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, predicate, actualValue);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Mismatch{key=%s}", key);
+        }
+    }
+
+    /**
+     * Evaluates actual navigator property values against the requirements of
+     * this test case. A value that is absent from the map is treated the same
+     * as a null value, and non-null values are compared by their string form.
+     * @param actual map of property names to actual values
+     * @return the mismatches, in requirement order; empty if all requirements are satisfied
+     */
+    public ImmutableList<Mismatch> evaluate(Map<String, ?> actual) {
+        ImmutableList.Builder<Mismatch> mismatches = null;
+        for (Map.Entry<String, RequiredValue> entry : output.window.navigator.entrySet()) {
+            Object actualValue = actual.get(entry.getKey());
+            RequirementMatcher matcher = entry.getValue().matcher();
+            if (!matcher.test(actualValue == null ? null : actualValue.toString())) {
+                if (mismatches == null) {
+                    mismatches = ImmutableList.builder();
+                }
+                mismatches.add(new Mismatch(entry.getKey(), matcher, actualValue));
+            }
+        }
+        return mismatches == null ? ImmutableList.of() : mismatches.build();
     }
 
-    public static List<BrowserFingerprintTestCase> loadSome(Predicate<? super BrowserFingerprintTestCase> filter) throws IOException {
-        return loadAsStream().filter(filter).collect(Collectors.toList());
+    public static List<BrowserFingerprintTestCase> loadAll() {
+        return NavigatorTestCorpus.getDefault().getAll();
     }
 
-    public static List<BrowserFingerprintTestCase> loadSome(UserAgentFamily userAgentFamily) throws IOException {
-        return loadSome(testCase -> testCase.input.userAgentFamily == userAgentFamily);
+    public static List<BrowserFingerprintTestCase> loadSome(Predicate<? super BrowserFingerprintTestCase> filter) {
+        return loadAll().stream().filter(filter).collect(Collectors.toList());
     }
 
-    private static Stream<BrowserFingerprintTestCase> loadAsStream() throws IOException {
-        URL resource = BrowserFingerprintTestCase.class.getResource("/attribution/navigator-test-cases.json");
-        checkState(resource != null);
-        CharSource source = Resources.asCharSource(resource, UTF_8);
-        try (Reader reader = source.openStream()) {
-            BrowserFingerprintTestCase[] testCases = new Gson().fromJson(reader, BrowserFingerprintTestCase[].class);
-            checkState(testCases != null, "null loaded from %s", resource);
-            checkState(Arrays.stream(testCases).noneMatch(Objects::isNull), "expect all test cases to be non-null");
-            return Arrays.stream(testCases);
-        }
+    public static List<BrowserFingerprintTestCase> loadSome(UserAgentFamily userAgentFamily) {
+        return NavigatorTestCorpus.getDefault().get(userAgentFamily);
     }
 
 }
@@ -0,0 +1,75 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.EvalMode;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.Mismatch;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.RequiredValue;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BrowserFingerprintTestCaseTest {
+
+    @Test
+    public void asPredicate() {
+        Predicate<String> regex = new RequiredValue(EvalMode.regex, "^Linux x86_64$").asPredicate();
+        assertTrue("regex match", regex.test("Linux x86_64"));
+        assertFalse("regex mismatch", regex.test("Linux i686"));
+        assertFalse("regex null", regex.test(null));
+        Predicate<String> literal = new RequiredValue(EvalMode.literal, "Gecko").asPredicate();
+        assertTrue("literal match", literal.test(new String("Gecko")));
+        assertFalse("literal mismatch", literal.test("gecko"));
+        assertFalse("literal null", literal.test(null));
+        Predicate<String> absent = new RequiredValue(EvalMode.absent, null, true).asPredicate();
+        assertTrue("absent null", absent.test(null));
+        assertFalse("absent empty ignores vacancy", absent.test(""));
+        assertTrue("trivial true", new RequiredValue(EvalMode.trivial, "true").asPredicate().test("anything"));
+        assertFalse("trivial false", new RequiredValue(EvalMode.trivial, "false").asPredicate().test("anything"));
+        Predicate<String> vacant = new RequiredValue(EvalMode.regex, "\\d+", true).asPredicate();
+        assertTrue("vacant null", vacant.test(null));
+        assertTrue("vacant empty", vacant.test(""));
+        assertTrue("vacant match", vacant.test("8"));
+        assertFalse("vacant mismatch", vacant.test("eight"));
+    }
+
+    @Test
+    public void asPredicate_cached() {
+        RequiredValue requirement = new Gson().fromJson("{\"mode\": \"regex\", \"data\": \"a+\", \"allowVacant\": true}", RequiredValue.class);
+        Predicate<String> predicate = requirement.asPredicate();
+        assertSame("compiled once", predicate, requirement.asPredicate());
+        assertEquals("description", "Regex?{\"a+\"}", predicate.toString());
+        assertEquals("description", "RequiredAbsent{}", new RequiredValue(EvalMode.absent, null).asPredicate().toString());
+    }
+
+    @Test
+    public void evaluate() {
+        Map<String, RequiredValue> navigator = ImmutableMap.of(
+                "platform", new RequiredValue(EvalMode.literal, "Win32"),
+                "hardwareConcurrency", new RequiredValue(EvalMode.regex, "\\d+"),
+                "oscpu", new RequiredValue(EvalMode.absent, null),
+                "buildID", new RequiredValue(EvalMode.literal, "20181001000000", true));
+        BrowserFingerprintTestCase testCase = new BrowserFingerprintTestCase(
+                new BrowserFingerprintTestCase.Input(UserAgentFamily.FIREFOX, OperatingSystemFamily.WINDOWS, "Mozilla/5.0"),
+                new BrowserFingerprintTestCase.Output(new BrowserFingerprintTestCase.Output.Window(navigator)));
+        assertEquals("satisfied", ImmutableList.of(), testCase.evaluate(ImmutableMap.of("platform", "Win32", "hardwareConcurrency", 4L)));
+        Map<String, Object> actual = new HashMap<>();
+        actual.put("platform", "Linux x86_64");
+        actual.put("hardwareConcurrency", 4L);
+        actual.put("oscpu", "Linux x86_64");
+        actual.put("buildID", null);
+        assertEquals("mismatches", ImmutableList.of(
+                new Mismatch("platform", navigator.get("platform").asPredicate(), "Linux x86_64"),
+                new Mismatch("oscpu", navigator.get("oscpu").asPredicate(), "Linux x86_64")), testCase.evaluate(actual));
+    }
+}
@@ -44,4 +44,13 @@ public abstract class BrowserUsingTestBase<W extends WebDriver, P> {
         return getWebDriverProvider(parametry).provide(environment);
     }
 
+    /**
+     * Creates a webdriver and returns it with its service. Hand the result to
+     * {@link DriverReaper} when finished to tear it down in the background.
+     */
+    protected WebDriverProvider.DriverPlusService<? extends W> createWebDriverPlusService(P parametry) throws IOException {
+        Map<String, String> environment = xvfb.getController().newEnvironment();
+        return getWebDriverProvider(parametry).provideBoth(environment);
+    }
+
 }
@@ -2,7 +2,7 @@ package io.github.mike10004.antiprint.e2etests;
 
 import com.google.common.base.Strings;
 import com.opencsv.CSVReader;
-import org.openqa.selenium.chrome.ChromeDriver;
+import io.github.mike10004.extensibleffdriver.ExtensibleChromeDriver;
 import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
 
@@ -11,17 +11,54 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Locale;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-public class ChromeDriverProvider implements WebDriverProvider<ChromeDriver> {
+public class ChromeDriverProvider implements WebDriverProvider<ExtensibleChromeDriver> {
 
     public static final String SYSPROP_EXTRA_CHROME_ARGS = "antiprint.chrome.extraArgs";
     public static final String SYSPROP_CHROME_EXECUTABLE_PATH = "antiprint.chrome.executablePath";
+    public static final String SYSPROP_EXTENSION_LOADING = "antiprint.chrome.extensionLoading";
+
+    /**
+     * Way in which the extension is installed in a new browser session.
+     */
+    public enum ExtensionLoading {
+
+        /**
+         * The packed extension is embedded in the new session request, and chromedriver
+         * writes it to disk and unpacks it for each session. The encoded archive is cached,
+         * so it is only read and encoded once.
+         */
+        CRX,
+
+        /**
+         * The extension is unpacked once into a read-only directory under the build
+         * directory, and the browser is launched with {@code --load-extension} pointing
+         * to that directory.
+         */
+        UNPACKED;
+
+        /**
+         * Gets the loading mode specified by system property {@value #SYSPROP_EXTENSION_LOADING},
+         * or {@link #CRX} if the property is not set.
+         * @return the mode
+         */
+        public static ExtensionLoading fromSystemProperty() {
+            String value = Strings.nullToEmpty(System.getProperty(SYSPROP_EXTENSION_LOADING)).trim();
+            if (value.isEmpty()) {
+                return CRX;
+            }
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
 
     private ExtensionFileProvider crxProvider;
 
+    private final ExtensionLoading extensionLoading;
+
     @Nullable
     private final String userAgent;
 
@@ -34,12 +71,17 @@ public class ChromeDriverProvider implements WebDriverProvider<ChromeDriver> {
     }
 
     public ChromeDriverProvider(ExtensionFileProvider crxProvider, @Nullable  String userAgent) {
+        this(crxProvider, userAgent, ExtensionLoading.fromSystemProperty());
+    }
+
+    public ChromeDriverProvider(ExtensionFileProvider crxProvider, @Nullable  String userAgent, ExtensionLoading extensionLoading) {
         this.userAgent = userAgent;
         this.crxProvider = checkNotNull(crxProvider);
+        this.extensionLoading = checkNotNull(extensionLoading);
     }
 
     @Override
-    public DriverPlusService<ChromeDriver> provideBoth(Map<String, String> environment) throws IOException {
+    public DriverPlusService<ExtensibleChromeDriver> provideBoth(Map<String, String> environment, int port) throws IOException {
         ChromeOptions options = new ChromeOptions();
         String[] extraChromeArgs = getExtraChromeArgs();
         options.addArguments(extraChromeArgs);
@@ -47,7 +89,16 @@ public class ChromeDriverProvider implements WebDriverProvider<ChromeDriver> {
             options.addArguments("--user-agent=" + userAgent);
         }
         File crxFile = crxProvider.provide();
-        options.addExtensions(crxFile);
+        switch (extensionLoading) {
+            case CRX:
+                options.addEncodedExtensions(ChromeExtensions.encoded(crxFile));
+                break;
+            case UNPACKED:
+                options.addArguments("--load-extension=" + ChromeExtensions.unpacked(crxFile));
+                break;
+            default:
+                throw new IllegalStateException("unhandled: " + extensionLoading);
+        }
         String executablePath = System.getProperty(SYSPROP_CHROME_EXECUTABLE_PATH);
         if (!Strings.isNullOrEmpty(executablePath)) {
             File executableFile = new File(executablePath);
@@ -60,9 +111,10 @@ public class ChromeDriverProvider implements WebDriverProvider<ChromeDriver> {
             options.setBinary(executableFile);
         }
         ChromeDriverService cds = new ChromeDriverService.Builder()
+                .usingPort(port)
                 .withEnvironment(environment)
                 .build();
-        return new DriverPlusService<>(new ChromeDriver(cds, options), cds);
+        return new DriverPlusService<>(new ExtensibleChromeDriver(cds, options), cds);
     }
 
     protected String[] getExtraChromeArgs() {
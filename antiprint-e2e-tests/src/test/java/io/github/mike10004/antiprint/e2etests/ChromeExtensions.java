@@ -0,0 +1,164 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.mike10004.extensibleffdriver.EncodedAddonCache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Caches of the forms in which an extension archive is given to Chrome. Each
+ * form is computed once per archive version, where a version is identified by
+ * pathname, size, and modification time, so that creating a session does not
+ * cost more as the extension grows. Encodings are kept in the size-bounded
+ * {@link EncodedAddonCache#getShared() shared addon cache}.
+ */
+final class ChromeExtensions {
+
+    static final String UNPACKED_DIR_NAME = "unpacked-extensions";
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private static final Map<ArchiveVersion, Path> unpackedCache = new ConcurrentHashMap<>();
+
+    private ChromeExtensions() {}
+
+    /**
+     * Gets the base64 encoding of an extension archive, as it appears in the
+     * Chrome options of a new session request.
+     * @param crxFile the archive
+     * @return the encoded archive
+     * @throws IOException if the archive cannot be read
+     */
+    public static String encoded(File crxFile) throws IOException {
+        return EncodedAddonCache.getShared().encodeToString(crxFile.toPath());
+    }
+
+    /**
+     * Gets a directory containing the unpacked contents of an extension archive.
+     * The directory is under the build directory and is named by the hash of the
+     * archive, so it is shared by all processes that use the same archive. Its
+     * files are read-only.
+     * @param crxFile the archive, in CRX or zip format
+     * @return the directory
+     * @throws IOException if unpacking fails
+     */
+    public static Path unpacked(File crxFile) throws IOException {
+        return unpacked(crxFile, Tests.getBuildDir().toPath().resolve(UNPACKED_DIR_NAME));
+    }
+
+    static Path unpacked(File crxFile, Path parentDir) throws IOException {
+        try {
+            return unpackedCache.computeIfAbsent(ArchiveVersion.of(crxFile), version -> {
+                try {
+                    return unpack(crxFile, parentDir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Path unpack(File crxFile, Path parentDir) throws IOException {
+        String hash = MoreFiles.asByteSource(crxFile.toPath()).hash(Hashing.sha256()).toString();
+        Path destination = parentDir.resolve(hash);
+        if (Files.isRegularFile(destination.resolve(COMPLETE_MARKER))) {
+            return destination;
+        }
+        Files.createDirectories(parentDir);
+        Path staging = Files.createTempDirectory(parentDir, hash + ".tmp");
+        try {
+            Unzippage unzippage = Unzippage.map(crxFile);
+            for (String entry : unzippage.fileEntries()) {
+                Path target = staging.resolve(entry).normalize();
+                checkArgument(target.startsWith(staging), "entry outside of archive root: %s", entry);
+                Files.createDirectories(target.getParent());
+                ByteSource bytes = unzippage.getFileBytes(entry);
+                bytes.copyTo(MoreFiles.asByteSink(target));
+                if (!target.toFile().setReadOnly()) {
+                    throw new IOException("could not make read-only: " + target);
+                }
+            }
+            Files.createFile(staging.resolve(COMPLETE_MARKER));
+            try {
+                Files.move(staging, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // another process unpacked the same archive first
+                if (!Files.isRegularFile(destination.resolve(COMPLETE_MARKER))) {
+                    throw e;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                delete(staging);
+            } catch (IOException deletionFailure) {
+                e.addSuppressed(deletionFailure);
+            }
+            throw e;
+        }
+        if (Files.exists(staging)) {
+            delete(staging);
+        }
+        return destination;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        for (Path path : MoreFiles.fileTraverser().depthFirstPreOrder(directory)) {
+            path.toFile().setWritable(true);
+        }
+        MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    private static final class ArchiveVersion {
+
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        private ArchiveVersion(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public static ArchiveVersion of(File file) throws IOException {
+            File absolute = file.getAbsoluteFile();
+            if (!absolute.isFile()) {
+                throw new FileNotFoundException(absolute.toString());
+            }
+            return new ArchiveVersion(absolute, absolute.length(), absolute.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ArchiveVersion)) return false;
+            ArchiveVersion that = (ArchiveVersion) o;
+            return size == that.size &&
+                    lastModified == that.lastModified &&
+                    file.equals(that.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, size, lastModified);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.extensibleffdriver.EncodedAddonCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChromeExtensionsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void unpacked() throws Exception {
+        Map<String, String> contents = ImmutableMap.of("manifest.json", "{\"name\": \"test\"}", "scripts/inject.js", "console.log('hello');");
+        File crxFile = temporaryFolder.newFile("extension.crx");
+        writeCrx(crxFile, contents);
+        Path parentDir = temporaryFolder.getRoot().toPath().resolve(ChromeExtensions.UNPACKED_DIR_NAME);
+        Path unpacked = ChromeExtensions.unpacked(crxFile, parentDir);
+        assertTrue("parent", unpacked.startsWith(parentDir));
+        for (Map.Entry<String, String> entry : contents.entrySet()) {
+            Path file = unpacked.resolve(entry.getKey());
+            assertEquals(entry.getKey(), entry.getValue(), new String(Files.readAllBytes(file), UTF_8));
+            assertFalse("read-only: " + file, Files.getPosixFilePermissions(file).contains(PosixFilePermission.OWNER_WRITE));
+        }
+        assertSame("cached", unpacked, ChromeExtensions.unpacked(crxFile, parentDir));
+        writeCrx(crxFile, ImmutableMap.of("manifest.json", "{\"name\": \"changed\"}"));
+        assertTrue("modified", crxFile.setLastModified(crxFile.lastModified() + 2000));
+        Path changed = ChromeExtensions.unpacked(crxFile, parentDir);
+        assertNotEquals("changed archive", unpacked, changed);
+        assertEquals("{\"name\": \"changed\"}", new String(Files.readAllBytes(changed.resolve("manifest.json")), UTF_8));
+    }
+
+    @Test
+    public void encoded() throws Exception {
+        File crxFile = temporaryFolder.newFile("extension.crx");
+        writeCrx(crxFile, ImmutableMap.of("manifest.json", "{}"));
+        String encoded = ChromeExtensions.encoded(crxFile);
+        assertArrayEquals("content", Files.readAllBytes(crxFile.toPath()), Base64.getDecoder().decode(encoded));
+        long hitCount = EncodedAddonCache.getShared().getHitCount();
+        assertEquals("cached", encoded, ChromeExtensions.encoded(crxFile));
+        assertTrue("hit count", EncodedAddonCache.getShared().getHitCount() > hitCount);
+    }
+
+    private static void writeCrx(File crxFile, Map<String, String> contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("Cr24 fake header".getBytes(US_ASCII));
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : contents.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(UTF_8));
+                zip.closeEntry();
+            }
+        }
+        Files.write(crxFile.toPath(), bytes.toByteArray());
+    }
+}
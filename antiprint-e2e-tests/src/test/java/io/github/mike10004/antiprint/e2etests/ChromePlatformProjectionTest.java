@@ -6,6 +6,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.openqa.selenium.WebDriver;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class ChromePlatformProjectionTest extends PlatformProjectionTestBase {
 
     @BeforeClass
@@ -28,6 +31,12 @@ public class ChromePlatformProjectionTest extends PlatformProjectionTestBase {
         testNavigatorProperties(UserAgentFamily.CHROME, OperatingSystemFamily.LINUX, new DefaultEvaluator());
     }
 
+    @Test
+    public void allPlatformsInOneSession() throws Exception {
+        List<OperatingSystemFamily> osFamilies = Arrays.asList(OperatingSystemFamily.WINDOWS, OperatingSystemFamily.OS_X, OperatingSystemFamily.LINUX);
+        testNavigatorPropertiesAfterUserAgentSwitches(UserAgentFamily.CHROME, osFamilies, new DefaultEvaluator());
+    }
+
     @Override
     protected WebDriverProvider<? extends WebDriver> getWebDriverProvider(String userAgent) {
         return new ChromeDriverProvider(userAgent);
@@ -2,8 +2,6 @@ package io.github.mike10004.antiprint.e2etests;
 
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import io.github.mike10004.nanochamp.server.NanoControl;
-import io.github.mike10004.nanochamp.server.NanoServer;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -39,12 +37,11 @@ public class Demos {
                 latch.countDown();
             }
         }, 1, 1, TimeUnit.SECONDS);
-        NanoServer server = PlatformProjectionTestBase.buildPrintNavigatorServer();
         File file = File.createTempFile("start-page", ".html");
         file.deleteOnExit();
 
-        try (NanoControl serverCtrl = server.startServer()) {
-            String serverUrl = serverCtrl.baseUri().toString();
+        try {
+            String serverUrl = FixturePageServer.getShared().uri(FixturePageServer.PRINT_NAVIGATOR).toString();
             String template = "<!DOCTYPE html>\n" +
                     "<html>\n" +
                     "  <body>\n" +
@@ -0,0 +1,218 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.mike10004.antiprint.e2etests.WebDriverProvider.DriverPlusService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Service that tears down webdriver sessions in the background. A caller hands
+ * a finished session to {@link #reap(DriverPlusService)} and continues without
+ * waiting for the browser to shut down. The session is quit on one of a fixed
+ * number of threads; if quitting fails or does not finish before the deadline,
+ * the driver service is stopped, which kills the driver process. The deadline
+ * is measured from when a thread starts quitting the session, so sessions that
+ * wait for a free thread still get a full attempt at a graceful quit.
+ *
+ * <p>Sessions that are still being reaped when the JVM exits have their driver
+ * services stopped by a shutdown hook of the {@link #getShared() shared} reaper.
+ */
+public final class DriverReaper {
+
+    static final int DEFAULT_THREADS = 4;
+    static final Duration DEFAULT_QUIT_DEADLINE = Duration.ofSeconds(10);
+
+    private static final Supplier<DriverReaper> shared = Suppliers.memoize(() -> {
+        DriverReaper reaper = new DriverReaper(DEFAULT_THREADS, DEFAULT_QUIT_DEADLINE);
+        Runtime.getRuntime().addShutdownHook(new Thread(reaper::stopOutstanding, "driver-reaper-shutdown"));
+        return reaper;
+    });
+
+    /**
+     * Way in which a session was torn down.
+     */
+    public enum Outcome {
+
+        /**
+         * The driver quit before the deadline.
+         */
+        QUIT,
+
+        /**
+         * Quitting the driver threw an exception, so the service was stopped.
+         */
+        STOPPED_AFTER_FAILURE,
+
+        /**
+         * The driver did not quit before the deadline, so the service was stopped.
+         */
+        STOPPED_AFTER_DEADLINE
+    }
+
+    private final Duration quitDeadline;
+    private final ExecutorService quitExecutor;
+    private final ScheduledExecutorService deadlineScheduler;
+    private final Set<Reap> outstanding;
+
+    DriverReaper(int threads, Duration quitDeadline) {
+        checkArgument(threads > 0, "threads must be positive: %s", threads);
+        checkArgument(!quitDeadline.isNegative() && !quitDeadline.isZero(), "deadline must be positive");
+        this.quitDeadline = quitDeadline;
+        quitExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("driver-reaper-%d")
+                .build());
+        deadlineScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("driver-reaper-deadline-%d")
+                .build());
+        outstanding = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Gets the shared reaper, which quits sessions on {@value #DEFAULT_THREADS} threads
+     * and stops the driver service if a session has not quit after ten seconds.
+     * @return the shared reaper
+     */
+    public static DriverReaper getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Takes ownership of a session and tears it down in the background.
+     * The caller must not use the session afterwards.
+     * @param session the session
+     * @return a future that completes when the session has been torn down
+     */
+    public CompletableFuture<Outcome> reap(DriverPlusService<?> session) {
+        Reap reap = new Reap(Objects.requireNonNull(session));
+        outstanding.add(reap);
+        reap.outcome.whenComplete((outcome, error) -> outstanding.remove(reap));
+        reap.start();
+        return reap.outcome;
+    }
+
+    /**
+     * Gets the number of sessions that have not yet been torn down.
+     * @return count of outstanding sessions
+     */
+    public int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    /**
+     * Waits for all sessions handed over so far to be torn down.
+     * @param timeout maximum duration to wait
+     * @return true if no sessions are outstanding
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitOutstanding(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Reap reap : new ArrayList<>(outstanding)) {
+            try {
+                reap.outcome.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException ignore) {
+                // completed
+            }
+        }
+        return outstanding.isEmpty();
+    }
+
+    /**
+     * Stops the driver services of all outstanding sessions immediately.
+     */
+    void stopOutstanding() {
+        List<Reap> remaining = new ArrayList<>(outstanding);
+        remaining.forEach(reap -> reap.stopService(Outcome.STOPPED_AFTER_DEADLINE));
+    }
+
+    private final class Reap {
+
+        private final DriverPlusService<?> session;
+        private final CompletableFuture<Outcome> outcome;
+        private final AtomicBoolean settled;
+        private volatile Future<?> quitTask;
+        private volatile ScheduledFuture<?> deadlineTask;
+
+        private Reap(DriverPlusService<?> session) {
+            this.session = session;
+            outcome = new CompletableFuture<>();
+            settled = new AtomicBoolean();
+        }
+
+        private void start() {
+            quitTask = quitExecutor.submit(this::quit);
+        }
+
+        private void quit() {
+            if (settled.get()) {
+                // stopped while waiting for a thread
+                return;
+            }
+            deadlineTask = deadlineScheduler.schedule(() -> stopService(Outcome.STOPPED_AFTER_DEADLINE), quitDeadline.toMillis(), TimeUnit.MILLISECONDS);
+            if (settled.get()) {
+                deadlineTask.cancel(false);
+                return;
+            }
+            try {
+                session.driver.quit();
+            } catch (RuntimeException e) {
+                if (!settled.get()) {
+                    // otherwise this thread was interrupted after the deadline passed
+                    System.err.format("failed to quit %s: %s%n", session.driver, e);
+                    stopService(Outcome.STOPPED_AFTER_FAILURE);
+                }
+                return;
+            }
+            if (settled.compareAndSet(false, true)) {
+                deadlineTask.cancel(false);
+                stop();
+                outcome.complete(Outcome.QUIT);
+            }
+        }
+
+        private void stopService(Outcome result) {
+            if (settled.compareAndSet(false, true)) {
+                Future<?> quitTask = this.quitTask;
+                if (quitTask != null) {
+                    quitTask.cancel(true);
+                }
+                ScheduledFuture<?> deadlineTask = this.deadlineTask;
+                if (deadlineTask != null) {
+                    deadlineTask.cancel(false);
+                }
+                stop();
+                outcome.complete(result);
+            }
+        }
+
+        private void stop() {
+            try {
+                session.stopService();
+            } catch (RuntimeException e) {
+                System.err.format("failed to stop %s: %s%n", session.service, e);
+            }
+        }
+    }
+}
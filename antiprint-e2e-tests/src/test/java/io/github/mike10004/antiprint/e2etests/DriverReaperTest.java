@@ -0,0 +1,120 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.antiprint.e2etests.DriverReaper.Outcome;
+import io.github.mike10004.antiprint.e2etests.WebDriverProvider.DriverPlusService;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DriverReaperTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private enum QuitBehavior {
+        RETURN, THROW, BLOCK
+    }
+
+    private static class FakeService extends DriverService {
+
+        public final CountDownLatch stopped = new CountDownLatch(1);
+
+        public FakeService() throws IOException {
+            super(new File("fake-driver-executable"), 0, ImmutableList.of(), ImmutableMap.of());
+        }
+
+        @Override
+        public boolean isRunning() {
+            return stopped.getCount() > 0;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            stopped.countDown();
+        }
+    }
+
+    private static DriverPlusService<WebDriver> session(QuitBehavior behavior, FakeService service) {
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(DriverReaperTest.class.getClassLoader(), new Class<?>[]{WebDriver.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "quit":
+                    switch (behavior) {
+                        case THROW:
+                            throw new WebDriverException("session is dead");
+                        case BLOCK:
+                            new CountDownLatch(1).await();
+                            return null;
+                        default:
+                            return null;
+                    }
+                case "toString":
+                    return "FakeDriver";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return new DriverPlusService<>(driver, service);
+    }
+
+    @Test
+    public void reap() throws Exception {
+        DriverReaper reaper = new DriverReaper(2, Duration.ofMillis(200));
+        FakeService quitting = new FakeService(), failing = new FakeService(), hanging = new FakeService();
+        CompletableFuture<Outcome> quit = reaper.reap(session(QuitBehavior.RETURN, quitting));
+        CompletableFuture<Outcome> failed = reaper.reap(session(QuitBehavior.THROW, failing));
+        CompletableFuture<Outcome> hung = reaper.reap(session(QuitBehavior.BLOCK, hanging));
+        assertTrue("all torn down", reaper.awaitOutstanding(TIMEOUT));
+        assertEquals("outstanding", 0, reaper.getOutstandingCount());
+        assertEquals("quit", Outcome.QUIT, quit.get());
+        assertEquals("failed", Outcome.STOPPED_AFTER_FAILURE, failed.get());
+        assertEquals("hung", Outcome.STOPPED_AFTER_DEADLINE, hung.get());
+        for (FakeService service : ImmutableList.of(quitting, failing, hanging)) {
+            assertFalse("service stopped", service.isRunning());
+        }
+    }
+
+    @Test
+    public void deadlineStartsWhenQuitStarts() throws Exception {
+        Duration deadline = Duration.ofMillis(300);
+        DriverReaper reaper = new DriverReaper(1, deadline);
+        FakeService hanging = new FakeService(), queued = new FakeService();
+        CompletableFuture<Outcome> hung = reaper.reap(session(QuitBehavior.BLOCK, hanging));
+        CompletableFuture<Outcome> waited = reaper.reap(session(QuitBehavior.RETURN, queued));
+        assertTrue("all torn down", reaper.awaitOutstanding(TIMEOUT));
+        assertEquals("hung", Outcome.STOPPED_AFTER_DEADLINE, hung.get());
+        assertEquals("queued session quit after waiting for a thread", Outcome.QUIT, waited.get());
+    }
+
+    @Test
+    public void stopOutstanding() throws Exception {
+        DriverReaper reaper = new DriverReaper(1, Duration.ofMinutes(1));
+        FakeService service = new FakeService();
+        CountDownLatch cleanedUp = new CountDownLatch(1);
+        CompletableFuture<Outcome> hung = reaper.reap(new DriverPlusService<>(session(QuitBehavior.BLOCK, service).driver, service, cleanedUp::countDown));
+        assertEquals("outstanding", 1, reaper.getOutstandingCount());
+        assertFalse("still quitting", reaper.awaitOutstanding(Duration.ofMillis(100)));
+        reaper.stopOutstanding();
+        assertTrue("service stopped", service.stopped.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        assertTrue("session cleaned up", cleanedUp.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        assertEquals("outcome", Outcome.STOPPED_AFTER_DEADLINE, hung.get());
+        assertEquals("outstanding", 0, reaper.getOutstandingCount());
+    }
+}
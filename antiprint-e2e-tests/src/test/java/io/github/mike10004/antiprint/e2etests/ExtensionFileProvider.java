@@ -1,14 +1,10 @@
 package io.github.mike10004.antiprint.e2etests;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteSource;
-import io.github.mike10004.crxtool.CrxParser;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -37,7 +33,7 @@ public interface ExtensionFileProvider {
                             "preparatory phases and if the project was recently cleaned, the dependency files " +
                             "will not have been copied yet; expected file at " + extensionFile);
                 }
-                if (!isOutdatedCrxAllowed() && !isUpToDate(extensionFile, format)) {
+                if (!isOutdatedCrxAllowed() && !isUpToDate(extensionFile)) {
                     throw new IllegalStateException("extension must be re-built because source files are " +
                             "more recent than crx/zip file; build antiprint-extension module and then " +
                             "execute 'process-test-resources' goal in antiprint-e2e-tests directory");
@@ -51,38 +47,40 @@ public interface ExtensionFileProvider {
         return Boolean.parseBoolean(System.getProperty(SYSPROP_ALLOW_OUTDATED_EXTENSION_FILE, "false"));
     }
 
-    static boolean isUpToDate(File extensionFile, ExtensionFileFormat format) throws java.io.IOException {
-        Unzippage unzipped;
-        try (InputStream in = new FileInputStream(extensionFile)) {
-            if (format == ExtensionFileFormat.CRX) {
-                CrxParser.getDefault().parseMetadata(in);
-            }
-            unzipped = Unzippage.unzip(in);
+    /**
+     * Determines whether an extension file contains the current extension source files.
+     * Freshness is decided by the {@link ExtensionFreshnessManifest manifest} in the
+     * build directory, so files are only hashed if they have changed since the last
+     * check. If the extension file is outdated, the differences are printed.
+     */
+    static boolean isUpToDate(File extensionFile) throws IOException {
+        File extensionSourcesDir = getExtensionSourcesDir();
+        if (ExtensionFreshnessManifest.inBuildDir().isUpToDate(extensionFile, extensionSourcesDir.toPath())) {
+            return true;
         }
+        printDifferences(Unzippage.map(extensionFile), Tests.pseudoUnzippage(extensionSourcesDir.toPath()));
+        return false;
+    }
+
+    static File getExtensionSourcesDir() {
         File projectBasedir = new File(Tests.getParentBaseDir(), "antiprint-extension");
         checkState(projectBasedir.isDirectory(), "not a directory: %s", projectBasedir);
         File extensionSourcesDir = new File(projectBasedir, "src/main/extension");
         checkState(extensionSourcesDir.isDirectory(), "not a directory: %s", extensionSourcesDir);
-        Unzippage expected = Tests.pseudoUnzippage(extensionSourcesDir.toPath());
-        if (!Tests.filesEqual(expected, unzipped)) {
-            List<String> allEntries = ImmutableList.<String>builder()
-                    .addAll(unzipped.directoryEntries())
-                    .addAll(unzipped.fileEntries())
-                    .build();
-            System.err.format("%d file/directory entries in extension archive:%n", allEntries.size());
-            allEntries.stream().sorted().forEach(System.err::println);
-            for (String entry : expected.fileEntries()) {
-                ByteSource actual = unzipped.getFileBytes(entry);
-                if (actual == null) {
-                    System.err.format("extension archive does not have file: %s%n", entry);
-                }
-                if (actual != null && !expected.getFileBytes(entry).contentEquals(actual)) {
-                    System.err.format("needs to be updated: %s%n", entry);
-                }
-            }
-            return false;
-        }
-        return true;
+        return extensionSourcesDir;
+    }
+
+    static void printDifferences(Unzippage unzipped, Unzippage expected) throws IOException {
+        ArchiveDiff diff = ArchiveDiff.compare(expected, unzipped);
+        List<String> allEntries = ImmutableList.<String>builder()
+                .addAll(unzipped.directoryEntries())
+                .addAll(unzipped.fileEntries())
+                .build();
+        System.err.format("%d file/directory entries in extension archive:%n", allEntries.size());
+        allEntries.stream().sorted().forEach(System.err::println);
+        diff.getRemoved().forEach(entry -> System.err.format("extension archive does not have file: %s%n", entry));
+        diff.getAdded().forEach(entry -> System.err.format("extension archive has extra file: %s%n", entry));
+        diff.getChanged().forEach(change -> System.err.format("needs to be updated: %s (first difference at offset %d)%n", change.entry, change.offset));
     }
 
 }
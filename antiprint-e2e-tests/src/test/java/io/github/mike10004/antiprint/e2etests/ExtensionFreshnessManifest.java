@@ -0,0 +1,273 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Suppliers;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.commons.io.FilenameUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Manifest of digests used to decide whether an extension archive is up to date
+ * with the extension source files. Digests of archive entries are recorded with
+ * the size and modification time of the archive, and digests of source files are
+ * recorded with the size and modification time of each source file. A check
+ * re-hashes only the files whose size or modification time differs from the
+ * recorded values, so a check where nothing has changed requires only a stat of
+ * each file. The manifest is persisted as a JSON file, so that it survives across
+ * test JVMs.
+ *
+ * <p>A file modified within {@link #RECENCY_THRESHOLD_MILLIS} of being hashed is
+ * re-hashed on the next check, because a later modification within the resolution
+ * of the filesystem's timestamps might not change its modification time.
+ */
+public class ExtensionFreshnessManifest {
+
+    static final String DEFAULT_FILENAME = "extension-freshness-manifest.json";
+    static final long RECENCY_THRESHOLD_MILLIS = 2000;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+    private static final long UNTRUSTED = -1;
+
+    private static final Supplier<ExtensionFreshnessManifest> inBuildDir = Suppliers.memoize(() -> {
+        return new ExtensionFreshnessManifest(Tests.getBuildDir().toPath().resolve(DEFAULT_FILENAME));
+    });
+
+    private final Path manifestFile;
+    private final Gson gson;
+    private final AtomicLong hashCount;
+    private final Object lock = new Object();
+    @Nullable
+    private ManifestData data;
+    @Nullable
+    private FileTime dataModified;
+
+    public ExtensionFreshnessManifest(Path manifestFile) {
+        this.manifestFile = Objects.requireNonNull(manifestFile);
+        gson = new GsonBuilder().setPrettyPrinting().create();
+        hashCount = new AtomicLong();
+    }
+
+    /**
+     * Gets the shared instance whose manifest file is in the build directory.
+     * @return the instance
+     */
+    public static ExtensionFreshnessManifest inBuildDir() {
+        return inBuildDir.get();
+    }
+
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Gets the number of files and archives hashed by this instance.
+     * @return the count
+     */
+    long getHashCount() {
+        return hashCount.get();
+    }
+
+    /**
+     * Determines whether an archive contains exactly the files in a source directory.
+     * @param archive the zip or CRX file
+     * @param sourcesDir the source directory
+     * @return true if the set of file entries and their contents are the same as the source files
+     * @throws IOException on I/O error
+     */
+    public boolean isUpToDate(File archive, Path sourcesDir) throws IOException {
+        synchronized (lock) {
+            ManifestData data = load();
+            boolean modified = false;
+            String archiveKey = archive.getAbsoluteFile().toString();
+            FileStat archiveStat = FileStat.of(archive.toPath());
+            ArchiveRecord archiveRecord = data.archives.get(archiveKey);
+            if (archiveRecord == null || !archiveStat.matches(archiveRecord.size, archiveRecord.lastModified)) {
+                archiveRecord = new ArchiveRecord(archiveStat.trusted());
+                archiveRecord.entries.putAll(toStrings(Unzippage.digest(archive, HASH_FUNCTION)));
+                hashCount.incrementAndGet();
+                data.archives.put(archiveKey, archiveRecord);
+                modified = true;
+            }
+            String sourcesKey = sourcesDir.toAbsolutePath().toString();
+            Map<String, SourceRecord> previous = data.sources.getOrDefault(sourcesKey, new TreeMap<>());
+            Map<String, SourceRecord> current = new TreeMap<>();
+            for (Map.Entry<String, FileStat> entry : statSources(sourcesDir).entrySet()) {
+                String entryName = entry.getKey();
+                FileStat stat = entry.getValue();
+                SourceRecord record = previous.get(entryName);
+                if (record == null || !stat.matches(record.size, record.lastModified)) {
+                    HashCode digest = MoreFiles.asByteSource(sourcesDir.resolve(entryName)).hash(HASH_FUNCTION);
+                    hashCount.incrementAndGet();
+                    record = new SourceRecord(stat.trusted(), digest.toString());
+                    modified = true;
+                }
+                current.put(entryName, record);
+            }
+            if (!current.keySet().equals(previous.keySet())) {
+                modified = true;
+            }
+            if (modified) {
+                data.sources.put(sourcesKey, current);
+                save(data);
+            }
+            Map<String, String> sourceDigests = new TreeMap<>();
+            current.forEach((entryName, record) -> sourceDigests.put(entryName, record.sha256));
+            return sourceDigests.equals(archiveRecord.entries);
+        }
+    }
+
+    private static Map<String, String> toStrings(Map<String, HashCode> digests) {
+        Map<String, String> strings = new TreeMap<>();
+        digests.forEach((name, digest) -> strings.put(name, digest.toString()));
+        return strings;
+    }
+
+    private static Map<String, FileStat> statSources(Path sourcesDir) throws IOException {
+        Map<String, FileStat> stats = new TreeMap<>();
+        Files.walkFileTree(sourcesDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String entryName = FilenameUtils.normalizeNoEndSeparator(sourcesDir.relativize(file).toString(), true);
+                    stats.put(entryName, FileStat.of(attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return stats;
+    }
+
+    private ManifestData load() throws IOException {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(manifestFile);
+        } catch (NoSuchFileException e) {
+            modified = null;
+        }
+        if (data != null && Objects.equals(modified, dataModified)) {
+            return data;
+        }
+        ManifestData loaded = null;
+        if (modified != null) {
+            try (Reader reader = Files.newBufferedReader(manifestFile, UTF_8)) {
+                loaded = gson.fromJson(reader, ManifestData.class);
+            } catch (JsonParseException e) {
+                System.err.format("ignoring malformed manifest %s: %s%n", manifestFile, e);
+            }
+        }
+        data = loaded == null || loaded.archives == null || loaded.sources == null ? new ManifestData() : loaded;
+        dataModified = modified;
+        return data;
+    }
+
+    private void save(ManifestData data) throws IOException {
+        Files.createDirectories(manifestFile.getParent());
+        Path tempFile = Files.createTempFile(manifestFile.getParent(), manifestFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+                gson.toJson(data, writer);
+            }
+            try {
+                Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        dataModified = Files.getLastModifiedTime(manifestFile);
+    }
+
+    private static final class FileStat {
+
+        public final long size;
+        public final long lastModified;
+
+        private FileStat(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public static FileStat of(Path file) throws IOException {
+            return of(Files.readAttributes(file, BasicFileAttributes.class));
+        }
+
+        public static FileStat of(BasicFileAttributes attrs) {
+            return new FileStat(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        }
+
+        public boolean matches(long size, long lastModified) {
+            return lastModified != UNTRUSTED && this.size == size && this.lastModified == lastModified;
+        }
+
+        /**
+         * Returns this stat, or a stat that matches nothing if the file was
+         * modified too recently for its modification time to be trusted.
+         */
+        public FileStat trusted() {
+            long ageMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(lastModified);
+            return ageMillis < RECENCY_THRESHOLD_MILLIS ? new FileStat(size, UNTRUSTED) : this;
+        }
+    }
+
+    private static class ManifestData {
+        public Map<String, ArchiveRecord> archives = new TreeMap<>();
+        public Map<String, Map<String, SourceRecord>> sources = new TreeMap<>();
+    }
+
+    private static class ArchiveRecord {
+        public long size;
+        public long lastModified;
+        public Map<String, String> entries = new TreeMap<>();
+
+        @SuppressWarnings("unused") // for deserialization
+        private ArchiveRecord() {}
+
+        public ArchiveRecord(FileStat stat) {
+            size = stat.size;
+            lastModified = stat.lastModified;
+        }
+    }
+
+    private static class SourceRecord {
+        public long size;
+        public long lastModified;
+        public String sha256;
+
+        @SuppressWarnings("unused") // for deserialization
+        private SourceRecord() {}
+
+        public SourceRecord(FileStat stat, String sha256) {
+            size = stat.size;
+            lastModified = stat.lastModified;
+            this.sha256 = sha256;
+        }
+    }
+}
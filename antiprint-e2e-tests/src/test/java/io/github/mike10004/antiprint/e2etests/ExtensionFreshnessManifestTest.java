@@ -0,0 +1,87 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExtensionFreshnessManifestTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void isUpToDate() throws Exception {
+        Path sourcesDir = temporaryFolder.newFolder("extension").toPath();
+        Path manifestJson = write(sourcesDir.resolve("manifest.json"), "{}");
+        write(Files.createDirectories(sourcesDir.resolve("icons")).resolve("icon.png"), "png");
+        File archive = temporaryFolder.newFile("extension.zip");
+        zip(sourcesDir, archive, "manifest.json", "icons/icon.png");
+        Path manifestFile = temporaryFolder.getRoot().toPath().resolve("build").resolve(ExtensionFreshnessManifest.DEFAULT_FILENAME);
+        ExtensionFreshnessManifest manifest = new ExtensionFreshnessManifest(manifestFile);
+        assertTrue("initially", manifest.isUpToDate(archive, sourcesDir));
+        assertEquals("hashed archive and sources", 3, manifest.getHashCount());
+        assertTrue("unchanged", manifest.isUpToDate(archive, sourcesDir));
+        assertEquals("no re-hash", 3, manifest.getHashCount());
+
+        ExtensionFreshnessManifest reloaded = new ExtensionFreshnessManifest(manifestFile);
+        assertTrue("reloaded", reloaded.isUpToDate(archive, sourcesDir));
+        assertEquals("no re-hash after reload", 0, reloaded.getHashCount());
+
+        Files.setLastModifiedTime(manifestJson, FileTime.fromMillis(AN_HOUR_AGO + 1000));
+        assertTrue("touched", manifest.isUpToDate(archive, sourcesDir));
+        assertEquals("re-hashed touched file", 4, manifest.getHashCount());
+
+        write(manifestJson, "{\"name\": \"changed\"}");
+        assertFalse("changed", manifest.isUpToDate(archive, sourcesDir));
+        zip(sourcesDir, archive, "manifest.json", "icons/icon.png");
+        assertTrue("rebuilt", manifest.isUpToDate(archive, sourcesDir));
+
+        write(sourcesDir.resolve("added.js"), "added");
+        assertFalse("added", manifest.isUpToDate(archive, sourcesDir));
+        Files.delete(sourcesDir.resolve("added.js"));
+        assertTrue("removed", manifest.isUpToDate(archive, sourcesDir));
+    }
+
+    @Test
+    public void isUpToDate_malformedManifest() throws Exception {
+        Path sourcesDir = temporaryFolder.newFolder("extension").toPath();
+        write(sourcesDir.resolve("manifest.json"), "{}");
+        File archive = temporaryFolder.newFile("extension.zip");
+        zip(sourcesDir, archive, "manifest.json");
+        Path manifestFile = write(temporaryFolder.getRoot().toPath().resolve("manifest.json.cache"), "not json [");
+        assertTrue(new ExtensionFreshnessManifest(manifestFile).isUpToDate(archive, sourcesDir));
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(AN_HOUR_AGO));
+        return file;
+    }
+
+    private static void zip(Path sourcesDir, File archive, String...entries) throws IOException {
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (String entry : entries) {
+                zout.putNextEntry(new ZipEntry(entry));
+                zout.write(Files.readAllBytes(sourcesDir.resolve(entry)));
+            }
+        }
+        Files.setLastModifiedTime(archive.toPath(), FileTime.fromMillis(AN_HOUR_AGO + archive.length()));
+    }
+}
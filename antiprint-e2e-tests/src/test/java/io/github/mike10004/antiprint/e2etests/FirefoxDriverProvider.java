@@ -7,38 +7,109 @@ import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.firefox.FirefoxProfile;
 import org.openqa.selenium.firefox.GeckoDriverService;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Map;
 
 public class FirefoxDriverProvider implements WebDriverProvider<ExtensibleFirefoxDriver> {
 
     private final String userAgent;
+    @Nullable
+    private final FirefoxProfileTemplate profileTemplate;
 
     public FirefoxDriverProvider() {
         this(null);
     }
 
     public FirefoxDriverProvider(String userAgent) {
+        this(userAgent, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param userAgent user agent override, or null
+     * @param profileTemplate profile template with antiprint installed, or null to
+     * create a new profile and install antiprint in each session
+     */
+    public FirefoxDriverProvider(@Nullable String userAgent, @Nullable FirefoxProfileTemplate profileTemplate) {
         this.userAgent = userAgent;
+        this.profileTemplate = profileTemplate;
     }
 
-    @Override
-    public DriverPlusService<ExtensibleFirefoxDriver> provideBoth(Map<String, String> environment) throws IOException {
-        FirefoxProfile profile = new FirefoxProfile();
+    /**
+     * Builds a profile template with antiprint installed permanently.
+     * @param templateDir the profile directory to create
+     * @param environment environment for the geckodriver process
+     * @return the template
+     * @throws IOException on I/O error
+     */
+    public static FirefoxProfileTemplate buildProfileTemplate(Path templateDir, Map<String, String> environment) throws IOException {
         File extensionZipFile = ExtensionFileProvider.ofDependency(ExtensionFileFormat.ZIP).provide();
+        return FirefoxProfileTemplate.build(templateDir, Collections.singleton(extensionZipFile), Collections.emptyMap(), environment);
+    }
+
+    @Override
+    public DriverPlusService<ExtensibleFirefoxDriver> provideBoth(Map<String, String> environment, int port) throws IOException {
         FirefoxOptions options = new FirefoxOptions();
         if (userAgent != null) {
             options.addPreference("general.useragent.override", userAgent);
         }
-        options.setProfile(profile);
         GeckoDriverService service = new GeckoDriverService.Builder()
-                .usingAnyFreePort()
+                .usingPort(port)
                 .withEnvironment(environment)
                 .build();
-        ExtensibleFirefoxDriver driver = new ExtensibleFirefoxDriver(service, options);
-        driver.installAddon(AddonInstallRequest.fromFile(extensionZipFile, AddonPersistence.TEMPORARY));
-        return new DriverPlusService<>(driver, service);
+        if (profileTemplate == null) {
+            options.setProfile(new FirefoxProfile());
+            ExtensibleFirefoxDriver driver = new ExtensibleFirefoxDriver(service, options);
+            File extensionZipFile = ExtensionFileProvider.ofDependency(ExtensionFileFormat.ZIP).provide();
+            driver.installAddon(AddonInstallRequest.fromFile(extensionZipFile, AddonPersistence.TEMPORARY));
+            return new DriverPlusService<>(driver, service);
+        }
+        Path cloneDir = profileTemplate.newClone();
+        Runnable deleteClone = () -> {
+            try {
+                profileTemplate.deleteClone(cloneDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        options.addArguments("-profile", cloneDir.toString());
+        ExtensibleFirefoxDriver driver;
+        try {
+            driver = new ProfileCloneDriver(service, options, deleteClone);
+        } catch (RuntimeException e) {
+            deleteClone.run();
+            throw e;
+        }
+        // the clone is also deleted after the service stops, in case the driver fails to quit
+        return new DriverPlusService<>(driver, service, deleteClone);
+    }
+
+    /**
+     * Driver that deletes its profile clone when it quits, so that sessions
+     * obtained with {@link #provide(Map)} do not leave clones behind.
+     */
+    private static class ProfileCloneDriver extends ExtensibleFirefoxDriver {
+
+        private final Runnable deleteClone;
+
+        public ProfileCloneDriver(GeckoDriverService service, FirefoxOptions options, Runnable deleteClone) {
+            super(service, options);
+            this.deleteClone = deleteClone;
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                deleteClone.run();
+            }
+        }
     }
 
 
@@ -6,6 +6,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.openqa.selenium.WebDriver;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class FirefoxPlatformProjectionTest extends PlatformProjectionTestBase {
 
     @BeforeClass
@@ -27,6 +30,12 @@ public class FirefoxPlatformProjectionTest extends PlatformProjectionTestBase {
         testNavigatorProperties(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX, new DefaultEvaluator());
     }
 
+    @Test
+    public void allPlatformsInOneSession() throws Exception {
+        List<OperatingSystemFamily> osFamilies = Arrays.asList(OperatingSystemFamily.WINDOWS, OperatingSystemFamily.OS_X, OperatingSystemFamily.LINUX);
+        testNavigatorPropertiesAfterUserAgentSwitches(UserAgentFamily.FIREFOX, osFamilies, new DefaultEvaluator());
+    }
+
     @Override
     protected WebDriverProvider<? extends WebDriver> getWebDriverProvider(String userAgent) {
         return new FirefoxDriverProvider(userAgent);
@@ -0,0 +1,217 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.mike10004.extensibleffdriver.AddonInstallRequest;
+import io.github.mike10004.extensibleffdriver.AddonPersistence;
+import io.github.mike10004.extensibleffdriver.ExtensibleFirefoxDriver;
+import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Firefox profile directory that is built once and cloned for each session.
+ * A clone is passed to geckodriver as a directory with the {@code -profile}
+ * argument, so Selenium does not zip and encode a profile into the session
+ * capabilities and geckodriver does not unpack one. Addons installed in the
+ * template are installed permanently, so clones need no addon installation.
+ *
+ * <p>Clones hard-link files that Firefox never modifies in place, such as
+ * installed addon packages, and copy all other files. If hard links are not
+ * supported, for example because the clone is on a different filesystem
+ * than the template, files are copied.
+ */
+public class FirefoxProfileTemplate {
+
+    private static final ImmutableSet<String> LOCK_FILENAMES = ImmutableSet.of("lock", ".parentlock", "parent.lock");
+
+    private final Path templateDir;
+    private final Path clonesDir;
+
+    private FirefoxProfileTemplate(Path templateDir) {
+        this.templateDir = Objects.requireNonNull(templateDir);
+        this.clonesDir = templateDir.resolveSibling(templateDir.getFileName() + "-clones");
+    }
+
+    /**
+     * Creates an instance from an existing profile directory.
+     * @param templateDir the profile directory
+     * @return the template
+     */
+    public static FirefoxProfileTemplate fromDirectory(Path templateDir) {
+        checkArgument(Files.isDirectory(templateDir), "not a directory: %s", templateDir);
+        return new FirefoxProfileTemplate(templateDir);
+    }
+
+    /**
+     * Builds a template by launching Firefox with a new profile directory,
+     * installing addons permanently, and quitting. Preferences are written to
+     * the profile's {@code user.js} file before Firefox is launched. Permanent
+     * installation of an unsigned addon requires a Firefox build that honors
+     * {@code xpinstall.signatures.required}, which is set to false here.
+     * @param templateDir the profile directory to create; must not exist
+     * @param addonZipFiles addons to install
+     * @param preferences preferences to set; each value must be a string,
+     * integer, or boolean
+     * @param environment environment for the geckodriver process
+     * @return the template
+     * @throws IOException on I/O error
+     * @throws IllegalArgumentException if a preference value is not a string,
+     * integer, or boolean, or is an integer outside the range of a Firefox integer preference
+     */
+    public static FirefoxProfileTemplate build(Path templateDir, Iterable<File> addonZipFiles, Map<String, ?> preferences, Map<String, String> environment) throws IOException {
+        Map<String, Object> allPreferences = ImmutableMap.<String, Object>builder()
+                .put("xpinstall.signatures.required", false)
+                .putAll(preferences)
+                .build();
+        String userJs = toUserJs(allPreferences);
+        Files.createDirectories(templateDir.toAbsolutePath().getParent());
+        Files.createDirectory(templateDir);
+        Files.write(templateDir.resolve("user.js"), userJs.getBytes(UTF_8));
+        GeckoDriverService service = new GeckoDriverService.Builder()
+                .usingAnyFreePort()
+                .withEnvironment(environment)
+                .build();
+        FirefoxOptions options = new FirefoxOptions();
+        options.addArguments("-profile", templateDir.toString());
+        ExtensibleFirefoxDriver driver = new ExtensibleFirefoxDriver(service, options);
+        try {
+            for (File addonZipFile : addonZipFiles) {
+                driver.installAddon(AddonInstallRequest.fromFile(addonZipFile, AddonPersistence.PERMANENT));
+            }
+        } finally {
+            driver.quit();
+            service.stop();
+        }
+        return new FirefoxProfileTemplate(templateDir);
+    }
+
+    private static String toUserJs(Map<String, Object> preferences) {
+        return preferences.entrySet().stream()
+                .map(entry -> String.format("user_pref(\"%s\", %s);%n", entry.getKey(), toJsValue(entry.getKey(), entry.getValue())))
+                .collect(Collectors.joining());
+    }
+
+    /**
+     * Formats a preference value as a {@code user.js} literal. Integral numbers
+     * are written unquoted, because Firefox ignores a quoted value for an integer
+     * preference.
+     */
+    static String toJsValue(String name, Object value) {
+        if (value instanceof Boolean || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value.toString();
+        }
+        if (value instanceof Long) {
+            long longValue = (Long) value;
+            checkArgument(longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE, "integer preference %s out of range: %s", name, value);
+            return value.toString();
+        }
+        checkArgument(value instanceof String, "preference %s must be a string, integer, or boolean, but was %s", name, value.getClass().getName());
+        return "\"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    public Path getTemplateDir() {
+        return templateDir;
+    }
+
+    /**
+     * Creates a clone of the template in a new directory.
+     * @return the clone directory
+     * @throws IOException on I/O error
+     */
+    public Path newClone() throws IOException {
+        Files.createDirectories(clonesDir);
+        Path cloneDir = Files.createTempDirectory(clonesDir, "profile");
+        cloneTo(cloneDir);
+        return cloneDir;
+    }
+
+    /**
+     * Deletes a clone created by {@link #newClone()}. Does nothing if the clone
+     * has already been deleted.
+     * @param cloneDir the clone directory
+     * @throws IOException on I/O error
+     */
+    public void deleteClone(Path cloneDir) throws IOException {
+        checkArgument(clonesDir.equals(cloneDir.getParent()), "not a clone of this template: %s", cloneDir);
+        FileUtils.deleteDirectory(cloneDir.toFile());
+    }
+
+    /**
+     * Clones the template into an existing empty directory.
+     * @param cloneDir the destination directory
+     * @throws IOException on I/O error
+     */
+    public void cloneTo(Path cloneDir) throws IOException {
+        Files.walkFileTree(templateDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(cloneDir.resolve(templateDir.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String filename = file.getFileName().toString();
+                if (LOCK_FILENAMES.contains(filename) || attrs.isSymbolicLink()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path destination = cloneDir.resolve(templateDir.relativize(file).toString());
+                if (isImmutable(file)) {
+                    try {
+                        Files.createLink(destination, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | FileSystemException ignore) {
+                        // fall back to copying
+                    }
+                }
+                Files.copy(file, destination);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Determines whether a file in the template is never modified in place by Firefox,
+     * and therefore may be shared among clones.
+     * @param file the file
+     * @return true if the file may be hard-linked
+     */
+    static boolean isImmutable(Path file) {
+        return file.getFileName().toString().endsWith(".xpi");
+    }
+
+    /**
+     * Deletes all clones created by {@link #newClone()}.
+     */
+    public void deleteClones() {
+        try {
+            FileUtils.deleteDirectory(clonesDir.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FirefoxProfileTemplate{" +
+                "templateDir=" + templateDir +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FirefoxProfileTemplateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void newClone() throws Exception {
+        Path templateDir = temporaryFolder.newFolder("template").toPath();
+        Path xpi = Files.createDirectories(templateDir.resolve("extensions")).resolve("antiprint@mike10004.github.io.xpi");
+        Files.write(xpi, new byte[]{1, 2, 3});
+        Path prefs = templateDir.resolve("prefs.js");
+        Files.write(prefs, "user_pref(\"foo\", true);\n".getBytes(UTF_8));
+        Files.write(templateDir.resolve("lock"), new byte[0]);
+        FirefoxProfileTemplate template = FirefoxProfileTemplate.fromDirectory(templateDir);
+        Path clone = template.newClone();
+        Path clonedXpi = clone.resolve("extensions").resolve(xpi.getFileName());
+        Path clonedPrefs = clone.resolve("prefs.js");
+        assertArrayEquals("xpi content", Files.readAllBytes(xpi), Files.readAllBytes(clonedXpi));
+        assertTrue("xpi is linked", Files.isSameFile(xpi, clonedXpi));
+        assertArrayEquals("prefs content", Files.readAllBytes(prefs), Files.readAllBytes(clonedPrefs));
+        assertFalse("prefs is copied", Files.isSameFile(prefs, clonedPrefs));
+        assertFalse("lock file skipped", Files.exists(clone.resolve("lock")));
+        template.deleteClones();
+        assertFalse("clone deleted", Files.exists(clone));
+        assertTrue("template intact", Files.exists(xpi));
+    }
+
+    @Test
+    public void deleteClone() throws Exception {
+        Path templateDir = temporaryFolder.newFolder("template").toPath();
+        Files.write(templateDir.resolve("prefs.js"), "user_pref(\"foo\", true);\n".getBytes(UTF_8));
+        FirefoxProfileTemplate template = FirefoxProfileTemplate.fromDirectory(templateDir);
+        Path first = template.newClone();
+        Path second = template.newClone();
+        template.deleteClone(first);
+        assertFalse("clone deleted", Files.exists(first));
+        assertTrue("other clone intact", Files.exists(second.resolve("prefs.js")));
+        template.deleteClone(first);
+        try {
+            template.deleteClone(templateDir);
+            fail("should reject template directory");
+        } catch (IllegalArgumentException ignore) {
+        }
+        assertTrue("template intact", Files.exists(templateDir.resolve("prefs.js")));
+    }
+
+    @Test
+    public void toJsValue() {
+        assertEquals("true", FirefoxProfileTemplate.toJsValue("a", true));
+        assertEquals("7", FirefoxProfileTemplate.toJsValue("a", (short) 7));
+        assertEquals("100", FirefoxProfileTemplate.toJsValue("a", 100L));
+        assertEquals("\"Foo \\\"1.0\\\"\"", FirefoxProfileTemplate.toJsValue("a", "Foo \"1.0\""));
+        for (Object value : Arrays.asList(1.5, Integer.MAX_VALUE + 1L, new Object())) {
+            try {
+                FirefoxProfileTemplate.toJsValue("a", value);
+                fail("should reject " + value);
+            } catch (IllegalArgumentException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Suppliers;
+import com.google.common.io.Resources;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import io.github.mike10004.nanochamp.repackaged.fi.iki.elonen.NanoHTTPD;
+import io.github.mike10004.nanochamp.server.NanoControl;
+import io.github.mike10004.nanochamp.server.NanoResponse;
+import io.github.mike10004.nanochamp.server.NanoServer;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * HTTP server that hosts test pages. The shared instance is started the first
+ * time it is requested and serves every test in the process, so tests do not
+ * pay for starting a server or reading page resources. Page content is encoded
+ * when a page is added, and compressible content is also gzipped then, so
+ * serving a page only copies bytes. Connections are kept alive between requests.
+ *
+ * <p>Pages may be added at any time, and the server may be used concurrently.
+ * The extension is only active on http and https pages, so pages must be served
+ * rather than loaded from {@code file:} URLs.
+ */
+public final class FixturePageServer {
+
+    public static final String PRINT_NAVIGATOR = "/print-navigator.html";
+    public static final String LEAK_IP_THRU_WEBRTC = "/leak-ip-thru-webrtc.html";
+
+    private static final int MIN_GZIP_LENGTH = 256;
+
+    private static final Supplier<FixturePageServer> shared = Suppliers.memoize(() -> {
+        try {
+            FixturePageServer server = start();
+            server.addResource(PRINT_NAVIGATOR, MediaType.HTML_UTF_8);
+            server.addResource(LEAK_IP_THRU_WEBRTC, MediaType.HTML_UTF_8);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "fixture-page-server-shutdown"));
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    });
+
+    private final Map<String, Page> pages;
+    private final NanoControl control;
+
+    private FixturePageServer(Map<String, Page> pages, NanoControl control) {
+        this.pages = pages;
+        this.control = control;
+    }
+
+    /**
+     * Gets the shared server, starting it if necessary. The shared server hosts
+     * {@link #PRINT_NAVIGATOR} and {@link #LEAK_IP_THRU_WEBRTC}.
+     * @return the shared server
+     */
+    public static FixturePageServer getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Starts a server that hosts no pages.
+     * @return the server
+     * @throws IOException if the server cannot be started
+     */
+    static FixturePageServer start() throws IOException {
+        Map<String, Page> pages = new ConcurrentHashMap<>();
+        pages.put("/favicon.ico", new Page(MediaType.ICO, new byte[0], null));
+        NanoServer server = NanoServer.builder()
+                .handle(request -> serve(pages, request))
+                .build();
+        return new FixturePageServer(pages, server.startServer());
+    }
+
+    private static NanoHTTPD.Response serve(Map<String, Page> pages, NanoServer.ServiceRequest request) {
+        @Nullable Page page = pages.get(request.uri.getPath());
+        if (page == null) {
+            return NanoResponse.status(404).plainTextUtf8("404 Not Found");
+        }
+        NanoResponse response = NanoResponse.status(200);
+        if (page.gzipped != null && acceptsGzip(request.headers.apply(HttpHeaders.ACCEPT_ENCODING))) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip").content(page.contentType, page.gzipped);
+        } else {
+            response.content(page.contentType, page.content);
+        }
+        NanoHTTPD.Response built = response.build();
+        built.setKeepAlive(true);
+        return built;
+    }
+
+    private static boolean acceptsGzip(@Nullable String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Adds or replaces a page.
+     * @param path the path, beginning with a slash
+     * @param contentType the content type
+     * @param content the content, which must not be modified afterwards
+     * @return the page URL
+     */
+    public URI addPage(String path, MediaType contentType, byte[] content) {
+        checkArgument(path.startsWith("/"), "path must begin with a slash: %s", path);
+        pages.put(path, new Page(contentType, content, maybeGzip(contentType, content)));
+        return uri(path);
+    }
+
+    public URI addHtml(String path, String html) {
+        return addPage(path, MediaType.HTML_UTF_8, html.getBytes(UTF_8));
+    }
+
+    /**
+     * Adds a page whose content is a classpath resource with the same name as the path.
+     * @param path the path and resource name
+     * @param contentType the content type
+     * @return the page URL
+     * @throws IOException if the resource cannot be read
+     */
+    public URI addResource(String path, MediaType contentType) throws IOException {
+        URL resource = FixturePageServer.class.getResource(path);
+        checkArgument(resource != null, "resource not found: %s", path);
+        return addPage(path, contentType, Resources.toByteArray(resource));
+    }
+
+    public URI uri(String path) {
+        return control.baseUri().resolve(path);
+    }
+
+    public URI baseUri() {
+        return control.baseUri();
+    }
+
+    void stop() {
+        try {
+            control.close();
+        } catch (IOException e) {
+            System.err.format("failed to stop fixture page server: %s%n", e);
+        }
+    }
+
+    @Nullable
+    private static byte[] maybeGzip(MediaType contentType, byte[] content) {
+        boolean compressible = "text".equals(contentType.type())
+                || contentType.withoutParameters().equals(MediaType.JAVASCRIPT_UTF_8.withoutParameters())
+                || contentType.withoutParameters().equals(MediaType.JSON_UTF_8.withoutParameters());
+        if (!compressible || content.length < MIN_GZIP_LENGTH) {
+            return null;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] gzipped = buffer.toByteArray();
+        return gzipped.length < content.length ? gzipped : null;
+    }
+
+    private static final class Page {
+
+        public final MediaType contentType;
+        public final byte[] content;
+        @Nullable
+        public final byte[] gzipped;
+
+        private Page(MediaType contentType, byte[] content, @Nullable byte[] gzipped) {
+            this.contentType = Objects.requireNonNull(contentType);
+            this.content = Objects.requireNonNull(content);
+            this.gzipped = gzipped;
+        }
+    }
+}
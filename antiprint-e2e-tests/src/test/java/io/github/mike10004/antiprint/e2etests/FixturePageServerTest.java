@@ -0,0 +1,89 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FixturePageServerTest {
+
+    @Test
+    public void getShared() throws Exception {
+        FixturePageServer server = FixturePageServer.getShared();
+        assertSame("started once", server, FixturePageServer.getShared());
+        byte[] expected = Resources.toByteArray(getClass().getResource(FixturePageServer.PRINT_NAVIGATOR));
+        HttpURLConnection conn = open(server.uri(FixturePageServer.PRINT_NAVIGATOR), false);
+        assertEquals("status", 200, conn.getResponseCode());
+        assertEquals("content type", MediaType.HTML_UTF_8, MediaType.parse(conn.getContentType()));
+        assertArrayEquals("content", expected, read(conn));
+        assertEquals("webrtc page", 200, open(server.uri(FixturePageServer.LEAK_IP_THRU_WEBRTC), false).getResponseCode());
+    }
+
+    @Test
+    public void addPage() throws Exception {
+        FixturePageServer server = FixturePageServer.start();
+        try {
+            StringBuilder html = new StringBuilder("<!DOCTYPE html><html><body>");
+            for (int i = 0; i < 100; i++) {
+                html.append("<p>paragraph ").append(i).append("</p>");
+            }
+            html.append("</body></html>");
+            byte[] expected = html.toString().getBytes(UTF_8);
+            URI uri = server.addHtml("/custom.html", html.toString());
+            HttpURLConnection plain = open(uri, false);
+            assertNull("content encoding", plain.getHeaderField(HttpHeaders.CONTENT_ENCODING));
+            assertArrayEquals("plain content", expected, read(plain));
+            HttpURLConnection gzipped = open(uri, true);
+            assertEquals("content encoding", "gzip", gzipped.getHeaderField(HttpHeaders.CONTENT_ENCODING));
+            assertArrayEquals("gzipped content", expected, read(gzipped));
+            assertEquals("not found", 404, open(server.uri("/absent.html"), false).getResponseCode());
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<byte[]>> futures = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    futures.add(executor.submit(() -> read(open(uri, false))));
+                }
+                for (Future<byte[]> future : futures) {
+                    assertArrayEquals("concurrent content", expected, future.get());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static HttpURLConnection open(URI uri, boolean acceptGzip) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
+        if (acceptGzip) {
+            conn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+        return conn;
+    }
+
+    private static byte[] read(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            InputStream decoded = "gzip".equals(conn.getHeaderField(HttpHeaders.CONTENT_ENCODING)) ? new GZIPInputStream(in) : in;
+            return ByteStreams.toByteArray(decoded);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Unzippage backed by a memory-mapped archive. Only the central directory is
+ * read when an instance is created; an entry is inflated when a stream from
+ * its byte source is opened, and its bytes are never retained. Data preceding
+ * the zip data, such as a CRX header, is detected from the offsets in the end
+ * of central directory record and skipped. Zip64 archives are not supported.
+ *
+ * <p>The mapping remains valid until the instance and the byte sources obtained
+ * from it are garbage-collected, so the archive file must not be truncated while
+ * they are in use.
+ */
+class MappedUnzippage extends Unzippage {
+
+    private static final int SIG_LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int SIG_CENTRAL_DIRECTORY = 0x02014b50;
+    private static final int SIG_END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final ImmutableList<String> directoryEntries;
+    private final ImmutableMap<String, MappedEntry> fileEntries;
+
+    private MappedUnzippage(Iterable<String> directoryEntries, Map<String, MappedEntry> fileEntries) {
+        this.directoryEntries = ImmutableList.copyOf(directoryEntries);
+        this.fileEntries = ImmutableMap.copyOf(fileEntries);
+    }
+
+    public static MappedUnzippage map(File zipPathname) throws IOException {
+        MappedByteBuffer archive;
+        try (FileChannel channel = FileChannel.open(zipPathname.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("archive too large to map: " + zipPathname);
+            }
+            archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        archive.order(ByteOrder.LITTLE_ENDIAN);
+        return index(archive);
+    }
+
+    private static MappedUnzippage index(ByteBuffer archive) throws IOException {
+        int eocd = findEndOfCentralDirectory(archive);
+        int entryCount = u16(archive, eocd + 10);
+        long centralDirectorySize = u32(archive, eocd + 12);
+        long centralDirectoryOffset = u32(archive, eocd + 16);
+        if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("zip64 archives are not supported");
+        }
+        long prefixLength = eocd - centralDirectorySize - centralDirectoryOffset;
+        if (prefixLength < 0) {
+            throw new ZipException("invalid central directory offset " + centralDirectoryOffset);
+        }
+        ImmutableList.Builder<String> directoryEntries = ImmutableList.builder();
+        Map<String, MappedEntry> fileEntries = new LinkedHashMap<>();
+        int position = (int) (prefixLength + centralDirectoryOffset);
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_DIRECTORY_HEADER_LENGTH > eocd || archive.getInt(position) != SIG_CENTRAL_DIRECTORY) {
+                throw new ZipException("invalid central directory header at " + position);
+            }
+            int method = u16(archive, position + 10);
+            long crc = u32(archive, position + 16);
+            long compressedSize = u32(archive, position + 20);
+            long size = u32(archive, position + 24);
+            int nameLength = u16(archive, position + 28);
+            int extraLength = u16(archive, position + 30);
+            int commentLength = u16(archive, position + 32);
+            long localHeaderOffset = prefixLength + u32(archive, position + 42);
+            String name = readName(archive, position + CENTRAL_DIRECTORY_HEADER_LENGTH, nameLength);
+            if (name.endsWith("/")) {
+                directoryEntries.add(name);
+            } else {
+                fileEntries.put(name, new MappedEntry(archive, name, method, crc, compressedSize, size, localHeaderOffset));
+            }
+            position += CENTRAL_DIRECTORY_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+        return new MappedUnzippage(directoryEntries.build(), fileEntries);
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer archive) throws ZipException {
+        int lowest = Math.max(0, archive.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH - MAX_COMMENT_LENGTH);
+        for (int position = archive.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= lowest; position--) {
+            if (archive.getInt(position) == SIG_END_OF_CENTRAL_DIRECTORY) {
+                return position;
+            }
+        }
+        throw new ZipException("end of central directory record not found");
+    }
+
+    private static String readName(ByteBuffer archive, int position, int length) {
+        byte[] name = new byte[length];
+        ByteBuffer view = archive.duplicate();
+        view.position(position);
+        view.get(name);
+        return new String(name, UTF_8);
+    }
+
+    private static int u16(ByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private static long u32(ByteBuffer buffer, int position) {
+        return buffer.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public Iterable<String> fileEntries() {
+        return fileEntries.keySet();
+    }
+
+    @Override
+    public Iterable<String> directoryEntries() {
+        return directoryEntries;
+    }
+
+    @Override
+    public ByteSource getFileBytes(String fileEntry) {
+        return fileEntries.get(fileEntry);
+    }
+
+    @Override
+    public OptionalLong getFileCrc32(String fileEntry) {
+        MappedEntry entry = fileEntries.get(fileEntry);
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.crc);
+    }
+
+    private static class MappedEntry extends ByteSource {
+
+        private final ByteBuffer archive;
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private MappedEntry(ByteBuffer archive, String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.archive = archive;
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            ByteBuffer data = slice();
+            switch (method) {
+                case METHOD_STORED:
+                    return new ByteBufferInputStream(data);
+                case METHOD_DEFLATED:
+                    return new EntryInflaterInputStream(new ByteBufferInputStream(data));
+                default:
+                    throw new ZipException("unsupported compression method " + method + " for entry " + name);
+            }
+        }
+
+        private ByteBuffer slice() throws ZipException {
+            if (localHeaderOffset + LOCAL_FILE_HEADER_LENGTH > archive.limit()
+                    || archive.getInt((int) localHeaderOffset) != SIG_LOCAL_FILE_HEADER) {
+                throw new ZipException("invalid local file header for entry " + name);
+            }
+            int header = (int) localHeaderOffset;
+            long dataStart = localHeaderOffset + LOCAL_FILE_HEADER_LENGTH + u16(archive, header + 26) + u16(archive, header + 28);
+            if (dataStart + compressedSize > archive.limit()) {
+                throw new ZipException("truncated data for entry " + name);
+            }
+            ByteBuffer data = archive.duplicate();
+            data.limit((int) (dataStart + compressedSize));
+            data.position((int) dataStart);
+            return data.slice();
+        }
+
+        @Override
+        public Optional<Long> sizeIfKnown() {
+            return Optional.of(size);
+        }
+
+        @Override
+        public String toString() {
+            return "MappedEntry{" + name + "}";
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflater stream that releases its inflater on close and supplies the
+     * extra byte that a raw inflater may require at the end of the input,
+     * as {@link java.util.zip.ZipFile} does.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        public EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("unexpected end of compressed data");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
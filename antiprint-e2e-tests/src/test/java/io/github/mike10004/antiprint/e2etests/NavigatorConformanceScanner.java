@@ -0,0 +1,395 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.service.UADetectorServiceFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Scanner that checks captured navigator property dumps against the
+ * expectations in a navigator test corpus. The input is a JSON Lines stream
+ * in which each record is an object of the form written by the print-navigator
+ * page, mapping navigator property names to values. Each record is matched to
+ * a test case by the user agent family and operating system family parsed from
+ * its {@code userAgent} property.
+ *
+ * <p>Records are read one at a time on the calling thread and evaluated in
+ * batches by a pool of worker threads. The queue of pending batches is bounded,
+ * and when it is full the calling thread evaluates the batch itself, so memory
+ * use does not depend on the size of the input. Only aggregate counts are kept.
+ *
+ * <p>To scan a file from the command line, run {@link #main(String[])} with the
+ * test classpath of this module.
+ */
+public final class NavigatorConformanceScanner {
+
+    static final String USER_AGENT_PROPERTY = "userAgent";
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long USER_AGENT_CACHE_SIZE = 10_000;
+
+    private static final TypeAdapter<JsonElement> jsonElementAdapter = new Gson().getAdapter(JsonElement.class);
+
+    private final NavigatorTestCorpus corpus;
+    private final int parallelism;
+    private final int batchSize;
+    private final LoadingCache<String, Platform> platforms;
+
+    public NavigatorConformanceScanner(NavigatorTestCorpus corpus) {
+        this(corpus, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NavigatorConformanceScanner(NavigatorTestCorpus corpus, int parallelism) {
+        this(corpus, parallelism, DEFAULT_BATCH_SIZE, UADetectorServiceFactory.getResourceModuleParser());
+    }
+
+    NavigatorConformanceScanner(NavigatorTestCorpus corpus, int parallelism, int batchSize, UserAgentStringParser userAgentParser) {
+        checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+        checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
+        this.corpus = Objects.requireNonNull(corpus);
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        Objects.requireNonNull(userAgentParser);
+        platforms = CacheBuilder.newBuilder()
+                .maximumSize(USER_AGENT_CACHE_SIZE)
+                .build(new CacheLoader<String, Platform>() {
+                    @Override
+                    public Platform load(String userAgent) {
+                        ReadableUserAgent parsed = userAgentParser.parse(userAgent);
+                        return new Platform(parsed.getFamily(), parsed.getOperatingSystem().getFamily());
+                    }
+                });
+    }
+
+    public Report scan(Path jsonlFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(jsonlFile, UTF_8)) {
+            return scan(reader);
+        }
+    }
+
+    /**
+     * Scans a stream of navigator records.
+     * @param jsonl reader of JSON Lines text; not closed by this method
+     * @return the report
+     * @throws IOException if reading fails or the input is not well-formed JSON
+     */
+    public Report scan(Reader jsonl) throws IOException {
+        Tally tally = new Tally();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 2),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("conformance-scanner-%d").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(jsonl);
+            reader.setLenient(true);
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                @Nullable Map<String, Object> record = readRecord(reader);
+                if (record == null) {
+                    tally.malformed.increment();
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    pending.add(submit(executor, batch, tally));
+                    pending.removeIf(Future::isDone);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                pending.add(submit(executor, batch, tally));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return tally.toReport();
+    }
+
+    private Future<?> submit(ThreadPoolExecutor executor, List<Map<String, Object>> batch, Tally tally) {
+        return executor.submit(() -> {
+            for (Map<String, Object> record : batch) {
+                evaluate(record, tally);
+            }
+        });
+    }
+
+    private void evaluate(Map<String, Object> record, Tally tally) {
+        tally.records.increment();
+        Object userAgent = record.get(USER_AGENT_PROPERTY);
+        if (!(userAgent instanceof String)) {
+            tally.unmatched.increment();
+            return;
+        }
+        Platform platform = platforms.getUnchecked((String) userAgent);
+        List<BrowserFingerprintTestCase> candidates = corpus.get(platform.userAgentFamily, platform.os);
+        if (candidates.isEmpty()) {
+            tally.unmatched.increment();
+            return;
+        }
+        List<BrowserFingerprintTestCase.Mismatch> mismatches = null;
+        for (BrowserFingerprintTestCase candidate : candidates) {
+            List<BrowserFingerprintTestCase.Mismatch> candidateMismatches = candidate.evaluate(record);
+            if (mismatches == null || candidateMismatches.size() < mismatches.size()) {
+                mismatches = candidateMismatches;
+            }
+        }
+        PlatformTally platformTally = tally.byPlatform.computeIfAbsent(platform, p -> new PlatformTally());
+        platformTally.records.increment();
+        if (!mismatches.isEmpty()) {
+            platformTally.nonconforming.increment();
+            for (BrowserFingerprintTestCase.Mismatch mismatch : mismatches) {
+                platformTally.mismatches.incrementAndGet(mismatch.key);
+            }
+        }
+    }
+
+    /**
+     * Reads the next record. Values are converted in the same manner as
+     * {@link Tests#deserialize(JsonElement)}; nested objects and arrays are
+     * kept as JSON text.
+     * @return the record, or null if the next value is not an object
+     */
+    @Nullable
+    static Map<String, Object> readRecord(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        Map<String, Object> record = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            record.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return record;
+    }
+
+    @Nullable
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case STRING:
+                return reader.nextString();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NUMBER:
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException ignore) {
+                }
+                double doubleValue = Double.parseDouble(number);
+                long longValue = (long) doubleValue;
+                return longValue == doubleValue ? (Object) longValue : (Object) doubleValue;
+            default:
+                return jsonElementAdapter.read(reader).toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        checkArgument(args.length >= 1 && args.length <= 2, "usage: %s CAPTURE_FILE [THREADS]", NavigatorConformanceScanner.class.getName());
+        NavigatorConformanceScanner scanner = args.length > 1
+                ? new NavigatorConformanceScanner(NavigatorTestCorpus.getDefault(), Integer.parseInt(args[1]))
+                : new NavigatorConformanceScanner(NavigatorTestCorpus.getDefault());
+        Report report;
+        if ("-".equals(args[0])) {
+            report = scanner.scan(new InputStreamReader(System.in, UTF_8));
+        } else {
+            report = scanner.scan(Paths.get(args[0]));
+        }
+        report.print(System.out);
+    }
+
+    /**
+     * Combination of user agent family and operating system family.
+     */
+    public static final class Platform implements Comparable<Platform> {
+
+        public final UserAgentFamily userAgentFamily;
+        public final OperatingSystemFamily os;
+
+        public Platform(UserAgentFamily userAgentFamily, OperatingSystemFamily os) {
+            this.userAgentFamily = Objects.requireNonNull(userAgentFamily);
+            this.os = Objects.requireNonNull(os);
+        }
+
+        @Override
+        public int compareTo(Platform other) {
+            int c = userAgentFamily.compareTo(other.userAgentFamily);
+            return c != 0 ? c : os.compareTo(other.os);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Platform)) return false;
+            Platform platform = (Platform) o;
+            return userAgentFamily == platform.userAgentFamily &&
+                    os == platform.os;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userAgentFamily, os);
+        }
+
+        @Override
+        public String toString() {
+            return userAgentFamily + "/" + os;
+        }
+    }
+
+    private static class Tally {
+
+        public final LongAdder records = new LongAdder();
+        public final LongAdder unmatched = new LongAdder();
+        public final LongAdder malformed = new LongAdder();
+        public final ConcurrentMap<Platform, PlatformTally> byPlatform = new ConcurrentHashMap<>();
+
+        public Report toReport() {
+            ImmutableSortedMap.Builder<Platform, PlatformReport> platformReports = ImmutableSortedMap.naturalOrder();
+            byPlatform.forEach((platform, tally) -> platformReports.put(platform, new PlatformReport(
+                    tally.records.sum(), tally.nonconforming.sum(), ImmutableSortedMap.copyOf(tally.mismatches.asMap()))));
+            return new Report(records.sum(), unmatched.sum(), malformed.sum(), platformReports.build());
+        }
+    }
+
+    private static class PlatformTally {
+        public final LongAdder records = new LongAdder();
+        public final LongAdder nonconforming = new LongAdder();
+        public final AtomicLongMap<String> mismatches = AtomicLongMap.create();
+    }
+
+    /**
+     * Counts for the records that were matched to a platform.
+     */
+    public static final class PlatformReport {
+
+        public final long records;
+
+        /**
+         * Number of records with at least one mismatch.
+         */
+        public final long nonconforming;
+
+        /**
+         * Number of mismatches by property name.
+         */
+        public final ImmutableSortedMap<String, Long> mismatches;
+
+        public PlatformReport(long records, long nonconforming, ImmutableSortedMap<String, Long> mismatches) {
+            this.records = records;
+            this.nonconforming = nonconforming;
+            this.mismatches = mismatches;
+        }
+    }
+
+    /**
+     * Aggregate result of a scan.
+     */
+    public static final class Report {
+
+        /**
+         * Number of well-formed records read.
+         */
+        public final long records;
+
+        /**
+         * Number of records without a user agent or whose platform has no test case.
+         */
+        public final long unmatched;
+
+        /**
+         * Number of top-level values that were not objects.
+         */
+        public final long malformed;
+
+        public final ImmutableSortedMap<Platform, PlatformReport> byPlatform;
+
+        public Report(long records, long unmatched, long malformed, ImmutableSortedMap<Platform, PlatformReport> byPlatform) {
+            this.records = records;
+            this.unmatched = unmatched;
+            this.malformed = malformed;
+            this.byPlatform = byPlatform;
+        }
+
+        /**
+         * Gets the number of mismatches by property name, summed over all platforms.
+         * @return the map of property names to mismatch counts
+         */
+        public ImmutableSortedMap<String, Long> getMismatchesByProperty() {
+            Map<String, Long> sums = new HashMap<>();
+            byPlatform.values().forEach(platformReport -> platformReport.mismatches.forEach((property, count) -> sums.merge(property, count, Long::sum)));
+            return ImmutableSortedMap.copyOf(sums);
+        }
+
+        public void print(PrintStream out) {
+            out.format("records:   %d%n", records);
+            out.format("unmatched: %d%n", unmatched);
+            out.format("malformed: %d%n", malformed);
+            out.println();
+            out.println("mismatches by property:");
+            ImmutableMap<String, Long> byProperty = getMismatchesByProperty();
+            Ordering.natural().<Long>reverse().onResultOf(byProperty::get).compound(Ordering.natural())
+                    .immutableSortedCopy(byProperty.keySet())
+                    .forEach(property -> out.format("  %-28s %d%n", property, byProperty.get(property)));
+            out.println();
+            out.println("by platform:");
+            byPlatform.forEach((platform, platformReport) -> {
+                out.format("  %-28s records=%d nonconforming=%d%n", platform, platformReport.records, platformReport.nonconforming);
+                platformReport.mismatches.forEach((property, count) -> out.format("    %-26s %d%n", property, count));
+            });
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.EvalMode;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.RequiredValue;
+import io.github.mike10004.antiprint.e2etests.NavigatorConformanceScanner.Platform;
+import io.github.mike10004.antiprint.e2etests.NavigatorConformanceScanner.PlatformReport;
+import io.github.mike10004.antiprint.e2etests.NavigatorConformanceScanner.Report;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import net.sf.uadetector.service.UADetectorServiceFactory;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class NavigatorConformanceScannerTest {
+
+    private static final String FIREFOX_LINUX = "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:56.0) Gecko/20100101 Firefox/56.0";
+    private static final String CHROME_WINDOWS = "Mozilla/5.0 (Windows NT 6.3; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/61.0.3163.100 Safari/537.36";
+
+    @Test
+    public void scan() throws Exception {
+        Map<String, RequiredValue> navigator = ImmutableMap.of(
+                "platform", new RequiredValue(EvalMode.literal, "Linux x86_64"),
+                "hardwareConcurrency", new RequiredValue(EvalMode.regex, "\\d+"),
+                "msMaxTouchPoints", new RequiredValue(EvalMode.absent, null));
+        NavigatorTestCorpus corpus = NavigatorTestCorpus.builder()
+                .addTestCases(ImmutableList.of(new BrowserFingerprintTestCase(
+                        new BrowserFingerprintTestCase.Input(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX, FIREFOX_LINUX),
+                        new BrowserFingerprintTestCase.Output(new BrowserFingerprintTestCase.Output.Window(navigator)))))
+                .build();
+        String jsonl = String.join("\n",
+                "{\"userAgent\": \"" + FIREFOX_LINUX + "\", \"platform\": \"Linux x86_64\", \"hardwareConcurrency\": 4}",
+                "{\"userAgent\": \"" + FIREFOX_LINUX + "\", \"platform\": \"Win32\", \"hardwareConcurrency\": 4, \"msMaxTouchPoints\": 0}",
+                "{\"userAgent\": \"" + FIREFOX_LINUX + "\", \"platform\": \"Win32\", \"hardwareConcurrency\": 4.5}",
+                "{\"userAgent\": \"" + CHROME_WINDOWS + "\", \"platform\": \"Win32\"}",
+                "{\"platform\": \"Linux x86_64\"}",
+                "[1, 2]",
+                "{\"userAgent\": \"" + FIREFOX_LINUX + "\", \"platform\": \"Linux x86_64\", \"hardwareConcurrency\": 8, \"plugins\": {\"length\": 0}}",
+                "");
+        NavigatorConformanceScanner scanner = new NavigatorConformanceScanner(corpus, 2, 2, UADetectorServiceFactory.getResourceModuleParser());
+        Report report = scanner.scan(new StringReader(jsonl));
+        assertEquals("records", 6, report.records);
+        assertEquals("unmatched", 2, report.unmatched);
+        assertEquals("malformed", 1, report.malformed);
+        assertEquals("platforms", ImmutableList.of(new Platform(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX)), report.byPlatform.keySet().asList());
+        PlatformReport firefoxLinux = report.byPlatform.values().iterator().next();
+        assertEquals("records", 4, firefoxLinux.records);
+        assertEquals("nonconforming", 2, firefoxLinux.nonconforming);
+        ImmutableSortedMap<String, Long> expectedMismatches = ImmutableSortedMap.of("platform", 2L, "hardwareConcurrency", 1L, "msMaxTouchPoints", 1L);
+        assertEquals("mismatches", expectedMismatches, firefoxLinux.mismatches);
+        assertEquals("mismatches by property", expectedMismatches, report.getMismatchesByProperty());
+    }
+}
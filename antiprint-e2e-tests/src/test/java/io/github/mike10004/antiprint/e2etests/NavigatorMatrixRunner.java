@@ -0,0 +1,456 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.github.mike10004.xvfbmanager.XvfbController;
+import com.github.mike10004.xvfbmanager.XvfbManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.Mismatch;
+import io.github.mike10004.antiprint.e2etests.WebDriverProvider.DriverPlusService;
+import net.sf.uadetector.UserAgentFamily;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Runner that executes the navigator test case matrix on parallel workers.
+ * Each worker has its own Xvfb display, allocated by the X server, its own
+ * range of driver service ports, and its own temporary directory, which is
+ * passed to the driver service and browser processes as {@code TMPDIR}.
+ * Workers take test cases from a shared queue, so a slow case does not hold
+ * up the cases behind it, and the results are merged into one report in
+ * test case order.
+ *
+ * <p>Drivers for the default providers must be set up before running; see
+ * {@link Tests#setUpChromedriver()} and {@link Tests#setUpGeckodriver()}.
+ */
+public final class NavigatorMatrixRunner {
+
+    public static final String SYSPROP_WORKERS = "antiprint.e2e.tests.matrixWorkers";
+
+    /**
+     * Name of the evaluation of property values obtained by script execution.
+     */
+    public static final String SOURCE_SCRIPT = "js execution";
+
+    /**
+     * Name of the evaluation of property values printed on the page.
+     */
+    public static final String SOURCE_PAGE = "json on page";
+
+    static final int DEFAULT_BASE_PORT = 24000;
+    static final int DEFAULT_PORTS_PER_WORKER = 16;
+
+    private final ImmutableList<BrowserFingerprintTestCase> testCases;
+    private final ImmutableMap<UserAgentFamily, Function<String, ? extends WebDriverProvider<?>>> providers;
+    private final int workers;
+    private final int basePort;
+    private final int portsPerWorker;
+    private final Path scratchDir;
+    private final boolean xvfb;
+
+    private NavigatorMatrixRunner(Builder builder) throws IOException {
+        providers = Maps.immutableEnumMap(builder.providers.isEmpty() ? defaultProviders() : builder.providers);
+        if (builder.testCases == null) {
+            testCases = NavigatorTestCorpus.getDefault().getAll().stream()
+                    .filter(testCase -> providers.containsKey(testCase.input.userAgentFamily))
+                    .collect(ImmutableList.toImmutableList());
+        } else {
+            testCases = ImmutableList.copyOf(builder.testCases);
+            testCases.forEach(testCase -> checkArgument(providers.containsKey(testCase.input.userAgentFamily), "no provider for %s", testCase.input.userAgentFamily));
+        }
+        workers = builder.workers;
+        basePort = builder.basePort;
+        portsPerWorker = builder.portsPerWorker;
+        checkArgument(basePort == WebDriverProvider.ANY_FREE_PORT || basePort + workers * portsPerWorker <= 65536, "port ranges for %s workers exceed maximum port", workers);
+        scratchDir = builder.scratchDir == null ? Files.createTempDirectory("navigator-matrix") : builder.scratchDir;
+        xvfb = builder.xvfb;
+    }
+
+    private static Map<UserAgentFamily, Function<String, ? extends WebDriverProvider<?>>> defaultProviders() {
+        Map<UserAgentFamily, Function<String, ? extends WebDriverProvider<?>>> providers = new EnumMap<>(UserAgentFamily.class);
+        providers.put(UserAgentFamily.CHROME, ChromeDriverProvider::new);
+        providers.put(UserAgentFamily.FIREFOX, FirefoxDriverProvider::new);
+        return providers;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ImmutableList<BrowserFingerprintTestCase> getTestCases() {
+        return testCases;
+    }
+
+    /**
+     * Runs all test cases. A worker that cannot be started does not take any
+     * test cases; test cases that no worker takes are reported as failures.
+     * @return the merged report
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public MatrixReport run() throws InterruptedException {
+        long start = System.nanoTime();
+        int workerCount = Math.min(workers, testCases.size());
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < testCases.size(); i++) {
+            queue.add(i);
+        }
+        AtomicReferenceArray<CaseResult> results = new AtomicReferenceArray<>(testCases.size());
+        List<Callable<Void>> tasks = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            int workerIndex = i;
+            tasks.add(() -> {
+                try (Worker worker = openWorker(workerIndex)) {
+                    Integer next;
+                    while ((next = queue.poll()) != null) {
+                        results.set(next, worker.execute(testCases.get(next)));
+                    }
+                }
+                return null;
+            });
+        }
+        if (!tasks.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(workerCount, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("navigator-matrix-worker-%d")
+                    .build());
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        System.err.format("matrix worker failed: %s%n", e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        ImmutableList.Builder<CaseResult> merged = ImmutableList.builder();
+        for (int i = 0; i < testCases.size(); i++) {
+            CaseResult result = results.get(i);
+            merged.add(result == null ? CaseResult.notRun(testCases.get(i)) : result);
+        }
+        return new MatrixReport(merged.build(), workerCount, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private Worker openWorker(int index) throws IOException, InterruptedException {
+        Path tempDir = Files.createDirectories(scratchDir.resolve("worker-" + index));
+        Map<String, String> environment = new HashMap<>();
+        XvfbController controller = null;
+        if (xvfb) {
+            controller = new XvfbManager().start(Files.createDirectories(tempDir.resolve("xvfb")));
+            try {
+                controller.waitUntilReady();
+            } catch (InterruptedException e) {
+                controller.stop();
+                throw e;
+            }
+            environment.putAll(controller.newEnvironment());
+        }
+        environment.put("TMPDIR", tempDir.toString());
+        return new Worker(index, tempDir, controller, environment);
+    }
+
+    private final class Worker implements Closeable {
+
+        private final int index;
+        private final Path tempDir;
+        @Nullable
+        private final XvfbController xvfbController;
+        private final Map<String, String> environment;
+        private final List<CompletableFuture<DriverReaper.Outcome>> reaps;
+        private int portCursor;
+
+        private Worker(int index, Path tempDir, @Nullable XvfbController xvfbController, Map<String, String> environment) {
+            this.index = index;
+            this.tempDir = tempDir;
+            this.xvfbController = xvfbController;
+            this.environment = ImmutableMap.copyOf(environment);
+            reaps = new ArrayList<>();
+        }
+
+        /**
+         * Gets the next port in this worker's range. Ports are used in rotation
+         * so that a port is not reused immediately after a driver service stops.
+         */
+        private int nextPort() {
+            if (basePort == WebDriverProvider.ANY_FREE_PORT) {
+                return WebDriverProvider.ANY_FREE_PORT;
+            }
+            int port = basePort + index * portsPerWorker + portCursor;
+            portCursor = (portCursor + 1) % portsPerWorker;
+            return port;
+        }
+
+        @Nullable
+        private String getDisplay() {
+            return xvfbController == null ? null : xvfbController.getDisplay();
+        }
+
+        public CaseResult execute(BrowserFingerprintTestCase testCase) {
+            int port = nextPort();
+            long start = System.nanoTime();
+            try {
+                WebDriverProvider<?> provider = providers.get(testCase.input.userAgentFamily).apply(testCase.input.userAgent);
+                DriverPlusService<?> both = provider.provideBoth(environment, port);
+                try {
+                    ImmutableMap<String, ImmutableList<Mismatch>> mismatches = project(both.driver, testCase);
+                    return new CaseResult(testCase, index, getDisplay(), port, Duration.ofNanos(System.nanoTime() - start), mismatches, null);
+                } finally {
+                    reaps.add(DriverReaper.getShared().reap(both));
+                }
+            } catch (Exception e) {
+                return new CaseResult(testCase, index, getDisplay(), port, Duration.ofNanos(System.nanoTime() - start), ImmutableMap.of(), e);
+            }
+        }
+
+        /**
+         * Waits for this worker's sessions to be torn down, then stops the
+         * display and deletes the temporary directory.
+         */
+        @Override
+        public void close() {
+            try {
+                CompletableFuture.allOf(reaps.toArray(new CompletableFuture<?>[0])).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.format("worker %d: failed to tear down sessions: %s%n", index, e.getCause());
+            }
+            if (xvfbController != null) {
+                xvfbController.stop();
+            }
+            try {
+                MoreFiles.deleteRecursively(tempDir, RecursiveDeleteOption.ALLOW_INSECURE);
+            } catch (IOException e) {
+                System.err.format("worker %d: failed to delete %s: %s%n", index, tempDir, e);
+            }
+        }
+    }
+
+    private static ImmutableMap<String, ImmutableList<Mismatch>> project(WebDriver driver, BrowserFingerprintTestCase testCase) {
+        driver.get(FixturePageServer.getShared().uri(FixturePageServer.PRINT_NAVIGATOR).toString());
+        NavigatorSnapshot snapshot = NavigatorSnapshot.capture((JavascriptExecutor) driver, testCase.output.window.navigator.keySet());
+        ImmutableList<Mismatch> scriptMismatches = testCase.evaluate(Maps.transformValues(snapshot.getProperties(), value -> value.orElse(null)));
+        String json = snapshot.getContentText();
+        checkState(json != null && !json.trim().isEmpty(), "div#content is blank");
+        ImmutableList<Mismatch> pageMismatches = testCase.evaluate(Maps.transformValues(PlatformProjectionTestBase.parseNavigatorJson(json), value -> value.orElse(null)));
+        return ImmutableMap.of(SOURCE_SCRIPT, scriptMismatches, SOURCE_PAGE, pageMismatches);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Tests.setUpChromedriver();
+        Tests.setUpGeckodriver();
+        MatrixReport report = builder().build().run();
+        report.print(System.out);
+        System.exit(report.isSuccess() ? 0 : 1);
+    }
+
+    public static final class Builder {
+
+        @Nullable
+        private List<BrowserFingerprintTestCase> testCases;
+        private final Map<UserAgentFamily, Function<String, ? extends WebDriverProvider<?>>> providers = new EnumMap<>(UserAgentFamily.class);
+        private int workers = Integer.getInteger(SYSPROP_WORKERS, Runtime.getRuntime().availableProcessors());
+        private int basePort = DEFAULT_BASE_PORT;
+        private int portsPerWorker = DEFAULT_PORTS_PER_WORKER;
+        @Nullable
+        private Path scratchDir;
+        private boolean xvfb = !BrowserUsingTestBase.SHOW_BROWSER_WINDOW;
+
+        private Builder() {}
+
+        /**
+         * Sets the test cases to run. By default, all test cases in the default
+         * corpus for which there is a provider are run.
+         */
+        public Builder testCases(Iterable<BrowserFingerprintTestCase> testCases) {
+            this.testCases = ImmutableList.copyOf(testCases);
+            return this;
+        }
+
+        /**
+         * Sets the provider factory for a user agent family. If no provider is set,
+         * Chrome and Firefox test cases are run with the standard providers.
+         * @param userAgentFamily the user agent family
+         * @param providerFactory function that creates a provider for a user agent string
+         */
+        public Builder provider(UserAgentFamily userAgentFamily, Function<String, ? extends WebDriverProvider<?>> providerFactory) {
+            providers.put(userAgentFamily, Objects.requireNonNull(providerFactory));
+            return this;
+        }
+
+        public Builder workers(int workers) {
+            checkArgument(workers > 0, "workers must be positive: %s", workers);
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Sets the driver service port ranges. Worker {@code i} uses ports
+         * {@code basePort + i * portsPerWorker} through
+         * {@code basePort + (i + 1) * portsPerWorker - 1}.
+         * @param basePort first port of the first worker's range, or
+         * {@link WebDriverProvider#ANY_FREE_PORT} to let each driver service use any free port
+         * @param portsPerWorker size of each worker's range
+         */
+        public Builder ports(int basePort, int portsPerWorker) {
+            checkArgument(basePort >= 0, "base port must be nonnegative: %s", basePort);
+            checkArgument(portsPerWorker > 0, "ports per worker must be positive: %s", portsPerWorker);
+            this.basePort = basePort;
+            this.portsPerWorker = portsPerWorker;
+            return this;
+        }
+
+        /**
+         * Sets the directory under which worker temporary directories are created.
+         * By default, a new temporary directory is created.
+         */
+        public Builder scratchDir(Path scratchDir) {
+            this.scratchDir = Objects.requireNonNull(scratchDir);
+            return this;
+        }
+
+        /**
+         * Sets whether each worker starts a virtual framebuffer. This is true by
+         * default unless browser windows are to be shown.
+         */
+        public Builder xvfb(boolean xvfb) {
+            this.xvfb = xvfb;
+            return this;
+        }
+
+        public NavigatorMatrixRunner build() throws IOException {
+            return new NavigatorMatrixRunner(this);
+        }
+    }
+
+    /**
+     * Result of running one test case.
+     */
+    public static final class CaseResult {
+
+        public final BrowserFingerprintTestCase testCase;
+
+        /**
+         * Index of the worker that ran the test case, or -1 if it was not run.
+         */
+        public final int worker;
+
+        @Nullable
+        public final String display;
+
+        public final int port;
+
+        public final Duration duration;
+
+        /**
+         * Mismatches by evaluation, either {@link #SOURCE_SCRIPT} or {@link #SOURCE_PAGE}.
+         */
+        public final ImmutableMap<String, ImmutableList<Mismatch>> mismatches;
+
+        /**
+         * Exception that prevented evaluation, or null.
+         */
+        @Nullable
+        public final Throwable failure;
+
+        CaseResult(BrowserFingerprintTestCase testCase, int worker, @Nullable String display, int port, Duration duration, ImmutableMap<String, ImmutableList<Mismatch>> mismatches, @Nullable Throwable failure) {
+            this.testCase = testCase;
+            this.worker = worker;
+            this.display = display;
+            this.port = port;
+            this.duration = duration;
+            this.mismatches = mismatches;
+            this.failure = failure;
+        }
+
+        static CaseResult notRun(BrowserFingerprintTestCase testCase) {
+            return new CaseResult(testCase, -1, null, WebDriverProvider.ANY_FREE_PORT, Duration.ZERO, ImmutableMap.of(), new IllegalStateException("no worker ran this test case"));
+        }
+
+        public boolean isSuccess() {
+            return failure == null && mismatches.values().stream().allMatch(List::isEmpty);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CaseResult{%s/%s, worker=%d, success=%s}", testCase.input.userAgentFamily, testCase.input.os, worker, isSuccess());
+        }
+    }
+
+    /**
+     * Merged results of a matrix run, in test case order.
+     */
+    public static final class MatrixReport {
+
+        public final ImmutableList<CaseResult> results;
+        public final int workers;
+        public final Duration elapsed;
+
+        MatrixReport(ImmutableList<CaseResult> results, int workers, Duration elapsed) {
+            this.results = results;
+            this.workers = workers;
+            this.elapsed = elapsed;
+        }
+
+        public boolean isSuccess() {
+            return results.stream().allMatch(CaseResult::isSuccess);
+        }
+
+        public ImmutableList<CaseResult> getUnsuccessful() {
+            return results.stream().filter(result -> !result.isSuccess()).collect(ImmutableList.toImmutableList());
+        }
+
+        public void print(PrintStream out) {
+            for (CaseResult result : results) {
+                out.format("%-5s %s/%s worker=%d display=%s port=%d %dms%n",
+                        result.failure != null ? "ERROR" : result.isSuccess() ? "PASS" : "FAIL",
+                        result.testCase.input.userAgentFamily, result.testCase.input.os,
+                        result.worker, result.display, result.port, result.duration.toMillis());
+                if (result.failure != null) {
+                    out.format("    %s%n", result.failure);
+                }
+                result.mismatches.forEach((source, mismatches) -> mismatches.forEach(m -> out.format("    %s: %s%n", source, m.describe())));
+            }
+            out.format("%d of %d test cases passed on %d workers in %dms%n",
+                    results.size() - getUnsuccessful().size(), results.size(), workers, elapsed.toMillis());
+        }
+
+        @Override
+        public String toString() {
+            return results.stream().map(CaseResult::toString).collect(Collectors.joining(", ", "MatrixReport{", "}"));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.EvalMode;
+import io.github.mike10004.antiprint.e2etests.BrowserFingerprintTestCase.RequiredValue;
+import io.github.mike10004.antiprint.e2etests.NavigatorMatrixRunner.CaseResult;
+import io.github.mike10004.antiprint.e2etests.NavigatorMatrixRunner.MatrixReport;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NavigatorMatrixRunnerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void run() throws Exception {
+        List<BrowserFingerprintTestCase> testCases = ImmutableList.of(
+                testCase(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX, "Linux x86_64"),
+                testCase(UserAgentFamily.FIREFOX, OperatingSystemFamily.WINDOWS, "Win32"),
+                testCase(UserAgentFamily.CHROME, OperatingSystemFamily.LINUX, "Linux x86_64"),
+                testCase(UserAgentFamily.CHROME, OperatingSystemFamily.OS_X, "MacIntel"),
+                testCase(UserAgentFamily.CHROME, OperatingSystemFamily.WINDOWS, "Win32"));
+        List<Integer> ports = new CopyOnWriteArrayList<>();
+        Map<Integer, Set<String>> tempDirsByPort = new ConcurrentHashMap<>();
+        WebDriverProvider<WebDriver> provider = (environment, port) -> {
+            ports.add(port);
+            tempDirsByPort.computeIfAbsent(port, p -> ConcurrentHashMap.newKeySet()).add(environment.get("TMPDIR"));
+            return new WebDriverProvider.DriverPlusService<>(fakeDriver("Linux x86_64"), null);
+        };
+        NavigatorMatrixRunner runner = NavigatorMatrixRunner.builder()
+                .testCases(testCases)
+                .provider(UserAgentFamily.FIREFOX, userAgent -> provider)
+                .provider(UserAgentFamily.CHROME, userAgent -> provider)
+                .workers(2)
+                .ports(30000, 2)
+                .scratchDir(temporaryFolder.getRoot().toPath())
+                .xvfb(false)
+                .build();
+        MatrixReport report = runner.run();
+        assertEquals("merged in order", testCases, report.results.stream().map(result -> result.testCase).collect(Collectors.toList()));
+        assertEquals("ports", testCases.size(), ports.size());
+        for (CaseResult result : report.results) {
+            assertTrue("worker " + result.worker, result.worker == 0 || result.worker == 1);
+            int rangeStart = 30000 + result.worker * 2;
+            assertTrue("port " + result.port + " in range of worker " + result.worker, result.port >= rangeStart && result.port < rangeStart + 2);
+            assertNull("display", result.display);
+            assertNull("failure", result.failure);
+            assertEquals("one temp dir per port", 1, tempDirsByPort.get(result.port).size());
+            boolean expectSuccess = result.testCase.input.os == OperatingSystemFamily.LINUX;
+            assertEquals("success of " + result, expectSuccess, result.isSuccess());
+            if (!expectSuccess) {
+                assertEquals("mismatched properties", ImmutableMap.of(NavigatorMatrixRunner.SOURCE_SCRIPT, ImmutableList.of("platform"), NavigatorMatrixRunner.SOURCE_PAGE, ImmutableList.of("platform")),
+                        ImmutableMap.copyOf(Maps.transformValues(result.mismatches, list -> list.stream().map(m -> m.key).collect(Collectors.toList()))));
+            }
+        }
+        assertEquals("unsuccessful", 3, report.getUnsuccessful().size());
+        assertFalse("success", report.isSuccess());
+        assertEquals("temp dirs removed", 0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void run_providerFails() throws Exception {
+        BrowserFingerprintTestCase testCase = testCase(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX, "Linux x86_64");
+        MatrixReport report = NavigatorMatrixRunner.builder()
+                .testCases(ImmutableList.of(testCase))
+                .provider(UserAgentFamily.FIREFOX, userAgent -> (environment, port) -> {
+                    throw new IOException("no browser");
+                })
+                .workers(4)
+                .ports(WebDriverProvider.ANY_FREE_PORT, 1)
+                .scratchDir(temporaryFolder.getRoot().toPath())
+                .xvfb(false)
+                .build()
+                .run();
+        assertEquals("workers", 1, report.workers);
+        CaseResult result = report.results.get(0);
+        assertTrue("failure", result.failure instanceof IOException);
+        assertFalse("success", report.isSuccess());
+    }
+
+    private static BrowserFingerprintTestCase testCase(UserAgentFamily userAgentFamily, OperatingSystemFamily os, String platform) {
+        return new BrowserFingerprintTestCase(
+                new BrowserFingerprintTestCase.Input(userAgentFamily, os, userAgentFamily + " on " + os),
+                new BrowserFingerprintTestCase.Output(new BrowserFingerprintTestCase.Output.Window(ImmutableMap.of(
+                        "platform", new RequiredValue(EvalMode.literal, platform)))));
+    }
+
+    private static WebDriver fakeDriver(String platform) {
+        return (WebDriver) Proxy.newProxyInstance(NavigatorMatrixRunnerTest.class.getClassLoader(), new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "get":
+                case "quit":
+                    return null;
+                case "executeScript":
+                    return ImmutableMap.of(
+                            "values", ImmutableMap.of("platform", platform),
+                            "nulls", ImmutableList.of(),
+                            "undefineds", ImmutableList.of(),
+                            "content", "{\"platform\": \"" + platform + "\"}");
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openqa.selenium.JavascriptExecutor;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Snapshot of navigator properties and page content captured with a single
+ * script execution. Properties whose values are undefined are absent from the
+ * snapshot, and properties whose values are null are present with empty values,
+ * in the same manner as the JSON that the print-navigator page writes.
+ */
+class NavigatorSnapshot {
+
+    static final String CONTENT_ELEMENT_ID = "content";
+
+    private static final String SCRIPT = "var names = arguments[0], contentId = arguments[1];\n" +
+            "var values = {}, nulls = [], undefineds = [];\n" +
+            "for (var i = 0; i < names.length; i++) {\n" +
+            "  var value = window.navigator[names[i]];\n" +
+            "  if (typeof value === 'undefined') {\n" +
+            "    undefineds.push(names[i]);\n" +
+            "  } else if (value === null) {\n" +
+            "    nulls.push(names[i]);\n" +
+            "  } else {\n" +
+            "    values[names[i]] = value;\n" +
+            "  }\n" +
+            "}\n" +
+            "var content = document.getElementById(contentId);\n" +
+            "return {'values': values, 'nulls': nulls, 'undefineds': undefineds, 'content': content === null ? null : content.textContent};";
+
+    private final ImmutableMap<String, Optional<Object>> properties;
+    private final ImmutableList<String> undefinedProperties;
+    @Nullable
+    private final String contentText;
+
+    private NavigatorSnapshot(Map<String, Optional<Object>> properties, List<String> undefinedProperties, @Nullable String contentText) {
+        this.properties = ImmutableMap.copyOf(properties);
+        this.undefinedProperties = ImmutableList.copyOf(undefinedProperties);
+        this.contentText = contentText;
+    }
+
+    /**
+     * Captures the values of navigator properties and the text of the content element.
+     * @param executor the script executor, usually the webdriver
+     * @param propertyNames names of navigator properties to capture
+     * @return the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static NavigatorSnapshot capture(JavascriptExecutor executor, Collection<String> propertyNames) {
+        Object result = executor.executeScript(SCRIPT, ImmutableList.copyOf(propertyNames), CONTENT_ELEMENT_ID);
+        checkState(result instanceof Map, "unexpected script result: %s", result);
+        Map<String, ?> resultMap = (Map<String, ?>) result;
+        Map<String, ?> values = (Map<String, ?>) resultMap.get("values");
+        List<String> nulls = (List<String>) resultMap.get("nulls");
+        List<String> undefineds = (List<String>) resultMap.get("undefineds");
+        Map<String, Optional<Object>> properties = new LinkedHashMap<>();
+        for (String name : propertyNames) {
+            if (values != null && values.containsKey(name)) {
+                properties.put(name, Optional.ofNullable(values.get(name)));
+            } else if (nulls != null && nulls.contains(name)) {
+                properties.put(name, Optional.empty());
+            }
+        }
+        return new NavigatorSnapshot(properties, undefineds == null ? Collections.emptyList() : undefineds, (String) resultMap.get("content"));
+    }
+
+    /**
+     * Gets the values of the properties that are defined. A null value is
+     * represented by an empty optional.
+     * @return the map of property names to values
+     */
+    public ImmutableMap<String, Optional<Object>> getProperties() {
+        return properties;
+    }
+
+    public ImmutableList<String> getUndefinedProperties() {
+        return undefinedProperties;
+    }
+
+    /**
+     * Gets the text content of the content element.
+     * @return the text, or null if the page has no content element
+     */
+    @Nullable
+    public String getContentText() {
+        return contentText;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class NavigatorSnapshotTest {
+
+    @Test
+    public void capture() {
+        AtomicInteger executions = new AtomicInteger();
+        JavascriptExecutor executor = (JavascriptExecutor) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JavascriptExecutor.class}, (proxy, method, args) -> {
+            assertEquals("method", "executeScript", method.getName());
+            executions.incrementAndGet();
+            Object[] scriptArgs = (Object[]) args[1];
+            assertEquals("names", ImmutableList.of("userAgent", "doNotTrack", "oscpu", "hardwareConcurrency"), scriptArgs[0]);
+            assertEquals("content id", NavigatorSnapshot.CONTENT_ELEMENT_ID, scriptArgs[1]);
+            Map<String, Object> result = new HashMap<>();
+            result.put("values", ImmutableMap.of("userAgent", "Mozilla/5.0", "hardwareConcurrency", 4L));
+            result.put("nulls", ImmutableList.of("doNotTrack"));
+            result.put("undefineds", ImmutableList.of("oscpu"));
+            result.put("content", "{\"userAgent\": \"Mozilla/5.0\"}");
+            return result;
+        });
+        List<String> names = ImmutableList.of("userAgent", "doNotTrack", "oscpu", "hardwareConcurrency");
+        NavigatorSnapshot snapshot = NavigatorSnapshot.capture(executor, names);
+        assertEquals("executions", 1, executions.get());
+        assertEquals("properties", ImmutableMap.of(
+                "userAgent", Optional.of("Mozilla/5.0"),
+                "doNotTrack", Optional.empty(),
+                "hardwareConcurrency", Optional.of(4L)), snapshot.getProperties());
+        assertFalse("undefined is absent", snapshot.getProperties().containsKey("oscpu"));
+        assertEquals("undefined", ImmutableList.of("oscpu"), snapshot.getUndefinedProperties());
+        assertEquals("content", "{\"userAgent\": \"Mozilla/5.0\"}", snapshot.getContentText());
+    }
+}
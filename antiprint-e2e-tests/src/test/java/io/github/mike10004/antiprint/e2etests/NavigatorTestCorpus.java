@@ -0,0 +1,214 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharSource;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.Resources;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Immutable collection of navigator test cases indexed by user agent family and
+ * operating system family. Corpus files are JSON arrays of test cases; each file
+ * is parsed once, element by element, when the corpus is built.
+ *
+ * <p>The built-in corpus contains the test cases from the {@value #DEFAULT_RESOURCE}
+ * resource, which has one test case per platform. The default corpus contains
+ * the built-in test cases followed by the test cases from any extra corpus files
+ * listed in the {@value #SYSPROP_EXTRA_CORPUS_FILES} system property. That
+ * property value is a comma-separated list of filesystem pathnames and classpath
+ * resource names prefixed by {@value #CLASSPATH_PREFIX}. Extra corpus files may
+ * contain any number of test cases for a platform, so lookups of the only test
+ * case for a platform should use the built-in corpus.
+ */
+public final class NavigatorTestCorpus {
+
+    public static final String DEFAULT_RESOURCE = "/navigator-test-cases.json";
+    public static final String SYSPROP_EXTRA_CORPUS_FILES = "antiprint.e2e.tests.extraNavigatorTestCases";
+    public static final String CLASSPATH_PREFIX = "classpath:";
+
+    private static final Gson gson = new Gson();
+
+    private static final Supplier<NavigatorTestCorpus> builtInCorpus = Suppliers.memoize(() -> {
+        try {
+            return builder().addResource(DEFAULT_RESOURCE).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    });
+
+    private static final Supplier<NavigatorTestCorpus> defaultCorpus = Suppliers.memoize(() -> {
+        try {
+            return withExtras(System.getProperty(SYSPROP_EXTRA_CORPUS_FILES, ""));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    });
+
+    private final ImmutableList<BrowserFingerprintTestCase> testCases;
+    private final ImmutableMap<UserAgentFamily, ImmutableList<BrowserFingerprintTestCase>> byUserAgentFamily;
+    private final ImmutableMap<UserAgentFamily, ImmutableMap<OperatingSystemFamily, ImmutableList<BrowserFingerprintTestCase>>> byPlatform;
+
+    private NavigatorTestCorpus(List<BrowserFingerprintTestCase> testCases) {
+        this.testCases = ImmutableList.copyOf(testCases);
+        Map<UserAgentFamily, List<BrowserFingerprintTestCase>> byUserAgentFamily = new EnumMap<>(UserAgentFamily.class);
+        Map<UserAgentFamily, Map<OperatingSystemFamily, List<BrowserFingerprintTestCase>>> byPlatform = new EnumMap<>(UserAgentFamily.class);
+        for (BrowserFingerprintTestCase testCase : testCases) {
+            UserAgentFamily userAgentFamily = testCase.input.userAgentFamily;
+            OperatingSystemFamily os = testCase.input.os;
+            if (userAgentFamily != null) {
+                byUserAgentFamily.computeIfAbsent(userAgentFamily, k -> new ArrayList<>()).add(testCase);
+                if (os != null) {
+                    byPlatform.computeIfAbsent(userAgentFamily, k -> new EnumMap<>(OperatingSystemFamily.class))
+                            .computeIfAbsent(os, k -> new ArrayList<>())
+                            .add(testCase);
+                }
+            }
+        }
+        this.byUserAgentFamily = Maps.immutableEnumMap(Maps.transformValues(byUserAgentFamily, ImmutableList::copyOf));
+        this.byPlatform = Maps.immutableEnumMap(Maps.transformValues(byPlatform, osMap -> Maps.immutableEnumMap(Maps.transformValues(osMap, ImmutableList::copyOf))));
+    }
+
+    /**
+     * Gets the built-in corpus, which is built the first time this method is invoked.
+     * @return the built-in corpus
+     */
+    public static NavigatorTestCorpus getBuiltIn() {
+        return builtInCorpus.get();
+    }
+
+    /**
+     * Gets the default corpus, which is built the first time this method is invoked.
+     * @return the default corpus
+     */
+    public static NavigatorTestCorpus getDefault() {
+        return defaultCorpus.get();
+    }
+
+    /**
+     * Builds a corpus of the built-in test cases followed by those from extra corpus files.
+     * @param extras comma-separated list of pathnames and prefixed resource names
+     * @return the corpus
+     * @throws IOException if reading a corpus file fails
+     */
+    static NavigatorTestCorpus withExtras(String extras) throws IOException {
+        Builder builder = builder().addTestCases(getBuiltIn().getAll());
+        for (String extra : Splitter.on(',').trimResults().omitEmptyStrings().split(extras)) {
+            if (extra.startsWith(CLASSPATH_PREFIX)) {
+                builder.addResource(extra.substring(CLASSPATH_PREFIX.length()));
+            } else {
+                builder.addFile(Paths.get(extra));
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ImmutableList<BrowserFingerprintTestCase> getAll() {
+        return testCases;
+    }
+
+    public ImmutableList<BrowserFingerprintTestCase> get(UserAgentFamily userAgentFamily) {
+        return byUserAgentFamily.getOrDefault(userAgentFamily, ImmutableList.of());
+    }
+
+    public ImmutableList<BrowserFingerprintTestCase> get(UserAgentFamily userAgentFamily, OperatingSystemFamily os) {
+        ImmutableMap<OperatingSystemFamily, ImmutableList<BrowserFingerprintTestCase>> osMap = byPlatform.get(userAgentFamily);
+        return osMap == null ? ImmutableList.of() : osMap.getOrDefault(os, ImmutableList.of());
+    }
+
+    /**
+     * Gets the only test case for a platform.
+     * @param userAgentFamily the user agent family
+     * @param os the operating system family
+     * @return the test case
+     * @throws IllegalArgumentException if there is not exactly one test case for the platform
+     */
+    public BrowserFingerprintTestCase getUnique(UserAgentFamily userAgentFamily, OperatingSystemFamily os) {
+        List<BrowserFingerprintTestCase> cases = get(userAgentFamily, os);
+        checkArgument(!cases.isEmpty(), "no cases match %s/%s", userAgentFamily, os);
+        checkArgument(cases.size() == 1, "multiple cases match %s/%s", userAgentFamily, os);
+        return cases.get(0);
+    }
+
+    public int size() {
+        return testCases.size();
+    }
+
+    public static final class Builder {
+
+        private final List<BrowserFingerprintTestCase> testCases = new ArrayList<>();
+        private final List<CharSource> sources = new ArrayList<>();
+
+        private Builder() {}
+
+        public Builder addResource(String resourceName) {
+            URL resource = NavigatorTestCorpus.class.getResource(resourceName);
+            checkArgument(resource != null, "resource not found: %s", resourceName);
+            sources.add(Resources.asCharSource(resource, UTF_8));
+            return this;
+        }
+
+        public Builder addFile(Path file) {
+            sources.add(MoreFiles.asCharSource(file, UTF_8));
+            return this;
+        }
+
+        public Builder addTestCases(Iterable<BrowserFingerprintTestCase> testCases) {
+            testCases.forEach(this.testCases::add);
+            return this;
+        }
+
+        /**
+         * Parses the corpus files and builds the corpus. Test cases added directly
+         * precede those from corpus files.
+         * @return the corpus
+         * @throws IOException if reading a corpus file fails
+         */
+        public NavigatorTestCorpus build() throws IOException {
+            List<BrowserFingerprintTestCase> all = new ArrayList<>(testCases);
+            for (CharSource source : sources) {
+                parse(source, all);
+            }
+            return new NavigatorTestCorpus(all);
+        }
+
+        private static void parse(CharSource source, List<BrowserFingerprintTestCase> destination) throws IOException {
+            try (Reader reader = source.openBufferedStream();
+                 JsonReader jsonReader = new JsonReader(reader)) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    BrowserFingerprintTestCase testCase = gson.fromJson(jsonReader, BrowserFingerprintTestCase.class);
+                    checkState(testCase != null && testCase.input != null, "malformed test case in %s", source);
+                    destination.add(testCase);
+                }
+                jsonReader.endArray();
+            }
+        }
+    }
+}
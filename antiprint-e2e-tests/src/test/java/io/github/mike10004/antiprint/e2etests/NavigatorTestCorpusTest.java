@@ -0,0 +1,83 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import net.sf.uadetector.OperatingSystemFamily;
+import net.sf.uadetector.UserAgentFamily;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NavigatorTestCorpusTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getDefault() {
+        NavigatorTestCorpus corpus = NavigatorTestCorpus.getDefault();
+        assertSame("parsed once", corpus, NavigatorTestCorpus.getDefault());
+        assertTrue("nonempty", corpus.size() > 0);
+        for (UserAgentFamily userAgentFamily : UserAgentFamily.values()) {
+            List<BrowserFingerprintTestCase> expected = corpus.getAll().stream()
+                    .filter(testCase -> testCase.input.userAgentFamily == userAgentFamily)
+                    .collect(Collectors.toList());
+            assertEquals(userAgentFamily.name(), expected, corpus.get(userAgentFamily));
+            for (OperatingSystemFamily os : OperatingSystemFamily.values()) {
+                List<BrowserFingerprintTestCase> expectedForOs = expected.stream()
+                        .filter(testCase -> testCase.input.os == os)
+                        .collect(Collectors.toList());
+                assertEquals(userAgentFamily + "/" + os, expectedForOs, corpus.get(userAgentFamily, os));
+            }
+        }
+    }
+
+    @Test
+    public void build_extraFile() throws Exception {
+        BrowserFingerprintTestCase extra = firefoxCase(OperatingSystemFamily.BSD, "Mozilla/5.0 (X11; FreeBSD amd64; rv:99.0) Gecko/20100101 Firefox/99.0");
+        Path extraFile = writeCorpusFile(extra);
+        NavigatorTestCorpus corpus = NavigatorTestCorpus.builder()
+                .addResource(NavigatorTestCorpus.DEFAULT_RESOURCE)
+                .addFile(extraFile)
+                .build();
+        assertEquals("size", NavigatorTestCorpus.getBuiltIn().size() + 1, corpus.size());
+        assertEquals("lookup", extra, corpus.getUnique(UserAgentFamily.FIREFOX, OperatingSystemFamily.BSD));
+        assertEquals("by family", NavigatorTestCorpus.getBuiltIn().get(UserAgentFamily.FIREFOX).size() + 1, corpus.get(UserAgentFamily.FIREFOX).size());
+        assertEquals("absent", ImmutableList.of(), corpus.get(UserAgentFamily.OPERA, OperatingSystemFamily.BSD));
+    }
+
+    @Test
+    public void withExtras_platformAlreadyCovered() throws Exception {
+        BrowserFingerprintTestCase builtIn = NavigatorTestCorpus.getBuiltIn().getUnique(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX);
+        BrowserFingerprintTestCase extra = firefoxCase(OperatingSystemFamily.LINUX, "Mozilla/5.0 (X11; Linux x86_64; rv:99.0) Gecko/20100101 Firefox/99.0");
+        Path extraFile = writeCorpusFile(extra);
+        NavigatorTestCorpus corpus = NavigatorTestCorpus.withExtras(extraFile.toString());
+        assertEquals("platform cases", ImmutableList.of(builtIn, extra), corpus.get(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX));
+        assertEquals("projection test case", builtIn, Tests.getNavigatorTestCase(UserAgentFamily.FIREFOX, OperatingSystemFamily.LINUX));
+    }
+
+    private static BrowserFingerprintTestCase firefoxCase(OperatingSystemFamily os, String userAgent) {
+        return new BrowserFingerprintTestCase(
+                new BrowserFingerprintTestCase.Input(UserAgentFamily.FIREFOX, os, userAgent),
+                new BrowserFingerprintTestCase.Output(new BrowserFingerprintTestCase.Output.Window(ImmutableMap.of(
+                        "userAgent", new BrowserFingerprintTestCase.RequiredValue(BrowserFingerprintTestCase.EvalMode.literal, userAgent)))));
+    }
+
+    private Path writeCorpusFile(BrowserFingerprintTestCase... testCases) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, new Gson().toJson(testCases).getBytes(UTF_8));
+        return file;
+    }
+}
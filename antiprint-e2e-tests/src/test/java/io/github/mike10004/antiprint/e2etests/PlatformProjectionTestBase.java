@@ -1,33 +1,30 @@
 package io.github.mike10004.antiprint.e2etests;
 
 import com.google.common.base.Joiner;
-import com.google.common.io.Resources;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import io.github.mike10004.nanochamp.server.NanoControl;
-import io.github.mike10004.nanochamp.server.NanoResponse;
-import io.github.mike10004.nanochamp.server.NanoServer;
+import io.github.mike10004.extensibleffdriver.UserAgentOverridable;
 import net.sf.uadetector.OperatingSystemFamily;
 import net.sf.uadetector.UserAgentFamily;
-import org.apache.commons.text.StringEscapeUtils;
-import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.WebElement;
 
-import javax.annotation.Nullable;
-import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Predicate;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public abstract class PlatformProjectionTestBase extends BrowserUsingTestBase<WebDriver, String> {
 
@@ -35,49 +32,62 @@ public abstract class PlatformProjectionTestBase extends BrowserUsingTestBase<We
         BrowserFingerprintTestCase testCase = Tests.getNavigatorTestCase(requiredUserAgentFamily, requiredOsFamily);
         System.out.format("%s/%s%nexpected navigator: %s%n", requiredUserAgentFamily, requiredOsFamily, Joiner.on(System.lineSeparator()).withKeyValueSeparator(" = ").join(testCase.output.window.navigator));
         String userAgent = testCase.input.userAgent;
-        WebDriver driver = createWebDriver(userAgent);
+        WebDriverProvider.DriverPlusService<? extends WebDriver> session = createWebDriverPlusService(userAgent);
+        WebDriver driver = session.driver;
         try {
-            NanoServer server = buildPrintNavigatorServer();
             // the extension is only active if the page URL is http[s]
-            try (NanoControl control = server.startServer()) {
-                driver.get(control.baseUri().toString());
-                Map<String, Optional<Object>> jsResults = new HashMap<>();
-                testCase.output.window.navigator.keySet().forEach(navigatorPropertyName -> {
-                    String js = "return window.navigator." + navigatorPropertyName;
-                    Object navigatorPropertyValue = ((JavascriptExecutor)driver).executeScript(js);
-                    jsResults.put(navigatorPropertyName, Optional.ofNullable(navigatorPropertyValue));
-                });
-                evaluator.evaluate("js execution", testCase, jsResults);
-                /*
-                 * Content is written with document.write, so we don't have to
-                 * use a WebDriverWait to poll the page
-                 */
-                String json = driver.findElements(By.id("content")).stream()
-                        .map(WebElement::getText)
-                        .filter(text -> !text.trim().isEmpty())
-                        .findFirst().orElse(null);
-                assertNotNull("div#content contents", json);
-                Map<String, Optional<Object>> actual = parseNavigatorJson(json);
-                maybePauseUntilKilled();
-                evaluator.evaluate("json on page", testCase, actual);
-            }
+            driver.get(FixturePageServer.getShared().uri(FixturePageServer.PRINT_NAVIGATOR).toString());
+            /*
+             * Content is written with document.write, so we don't have to
+             * use a WebDriverWait to poll the page; the property values and
+             * the content are captured in a single round trip
+             */
+            NavigatorSnapshot snapshot = NavigatorSnapshot.capture((JavascriptExecutor) driver, testCase.output.window.navigator.keySet());
+            evaluator.evaluate("js execution", testCase, snapshot.getProperties());
+            String json = snapshot.getContentText();
+            assertNotNull("div#content contents", json);
+            assertFalse("div#content is blank", json.trim().isEmpty());
+            Map<String, Optional<Object>> actual = parseNavigatorJson(json);
+            maybePauseUntilKilled();
+            evaluator.evaluate("json on page", testCase, actual);
         } finally {
-            driver.quit();
+            DriverReaper.getShared().reap(session);
         }
     }
 
-    static NanoServer buildPrintNavigatorServer() throws IOException {
-        String html = Resources.asCharSource(PlatformProjectionTestBase.class.getResource("/print-navigator.html"), UTF_8).read();
-        NanoServer server = NanoServer.builder()
-                .getPath("/", request -> {
-                    return NanoResponse.status(200).htmlUtf8(html);
-                })
-                .getPath("/favicon.ico", request -> NanoResponse.status(200).octetStream(new byte[0]))
-                .build();
-        return server;
+    /**
+     * Tests navigator properties for several platforms in a single browser session.
+     * The user agent of the running browser is changed before each page load,
+     * which verifies that the extension projects the platform that corresponds
+     * to the user agent in effect at navigation time, rather than the one the
+     * browser was launched with.
+     */
+    protected void testNavigatorPropertiesAfterUserAgentSwitches(UserAgentFamily requiredUserAgentFamily, List<OperatingSystemFamily> requiredOsFamilies, NavigatorEvaluator evaluator) throws Exception {
+        List<BrowserFingerprintTestCase> testCases = new ArrayList<>();
+        for (OperatingSystemFamily osFamily : requiredOsFamilies) {
+            testCases.add(Tests.getNavigatorTestCase(requiredUserAgentFamily, osFamily));
+        }
+        WebDriverProvider.DriverPlusService<? extends WebDriver> session = createWebDriverPlusService(testCases.get(0).input.userAgent);
+        WebDriver driver = session.driver;
+        try {
+            assertTrue("driver supports user agent override: " + driver.getClass(), driver instanceof UserAgentOverridable);
+            URI pageUri = FixturePageServer.getShared().uri(FixturePageServer.PRINT_NAVIGATOR);
+            // in reverse, so that the first page is loaded with a user agent other than the launch user agent
+            for (BrowserFingerprintTestCase testCase : Lists.reverse(testCases)) {
+                String userAgent = testCase.input.userAgent;
+                System.out.format("switching user agent to %s%n", userAgent);
+                ((UserAgentOverridable) driver).setUserAgentOverride(userAgent);
+                driver.get(pageUri.toString());
+                NavigatorSnapshot snapshot = NavigatorSnapshot.capture((JavascriptExecutor) driver, Sets.union(testCase.output.window.navigator.keySet(), ImmutableSet.of("userAgent")));
+                assertEquals("navigator.userAgent after switch", Optional.of(userAgent), snapshot.getProperties().get("userAgent"));
+                evaluator.evaluate("js execution after switch to " + userAgent, testCase, snapshot.getProperties());
+            }
+        } finally {
+            DriverReaper.getShared().reap(session);
+        }
     }
 
-    private Map<String, Optional<Object>> parseNavigatorJson(String json) {
+    static Map<String, Optional<Object>> parseNavigatorJson(String json) {
         JsonParser p = new JsonParser();
         JsonObject object = p.parse(json).getAsJsonObject();
         Map<String, Optional<Object>> parsed = new HashMap<>();
@@ -92,53 +102,12 @@ public abstract class PlatformProjectionTestBase extends BrowserUsingTestBase<We
         void evaluate(String description, BrowserFingerprintTestCase testCase, Map<String, Optional<Object>> actual) throws Exception;
     }
 
-    private static class Mismatch {
-        public final String key;
-        public final Predicate<?> predicate;
-        public final Object actualValue;
-
-        public Mismatch(String key, Predicate<?> predicate, Object actualValue) {
-            this.key = key;
-            this.predicate = predicate;
-            this.actualValue = actualValue;
-        }
-
-        public String describe() {
-            String actualValueStr = null;
-            if (actualValue != null) {
-                actualValueStr = '"' + StringEscapeUtils.escapeJava(actualValue.toString()) + '"';
-            }
-            return String.format("%s: predicate=%s; actual=%s", key, predicate, actualValueStr);
-        }
-
-        public String toString() {
-            return String.format("Mismatch{key=%s}", key);
-        }
-    }
-
     protected static class DefaultEvaluator implements NavigatorEvaluator {
         @Override
         public void evaluate(String description, BrowserFingerprintTestCase testCase, Map<String, Optional<Object>> actual) throws Exception {
-            List<Mismatch> mismatches = new ArrayList<>();
-            //noinspection Java8MapForEach
-            testCase.output.window.navigator.entrySet().forEach(entry -> {
-                String k = entry.getKey();
-                BrowserFingerprintTestCase.RequiredValue requirement = entry.getValue();
-                System.out.format("%s = %s (expectation: %s)%n", k, actual.get(k), requirement.asPredicate());
-                // This treats the absence of a value the same as a present null value, which is not ideal, but it'll do for now
-                @Nullable Optional<Object> actualValueOpt = actual.get(k);
-                @Nullable Object actualValue = null;
-                //noinspection OptionalAssignedToNull
-                if (actualValueOpt != null) {
-                    actualValue = actualValueOpt.orElse(null);
-                }
-                @Nullable String actualValueStr = actualValue == null ? null : actualValue.toString();
-                Predicate<String> predicate = requirement.asPredicate();
-                boolean ok = predicate.test(actualValueStr);
-                if (!ok) {
-                    mismatches.add(new Mismatch(k, predicate, actualValue));
-                }
-            });
+            System.out.format("%s: %s%n", description, actual);
+            // This treats the absence of a value the same as a present null value, which is not ideal, but it'll do for now
+            List<BrowserFingerprintTestCase.Mismatch> mismatches = testCase.evaluate(Maps.transformValues(actual, value -> value.orElse(null)));
             mismatches.forEach(m -> System.out.format("MISMATCH: %s%n", m.describe()));
             assertEquals("expected zero navigator property mismatches in " + description, Collections.emptyList(), mismatches);
         }
@@ -5,13 +5,10 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
-import com.google.common.io.Resources;
 import com.google.common.util.concurrent.AtomicLongMap;
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import io.github.bonigarcia.wdm.ChromeDriverManager;
@@ -48,11 +45,9 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -99,26 +94,11 @@ public class Tests {
     }
 
     public static BrowserFingerprintTestCase getNavigatorTestCase(UserAgentFamily userAgentFamily, OperatingSystemFamily operatingSystemFamily) {
-        Predicate<? super BrowserFingerprintTestCase> filter = testCase -> {
-            return userAgentFamily == testCase.input.userAgentFamily && operatingSystemFamily == testCase.input.os;
-        };
-        List<BrowserFingerprintTestCase> cases = getNavigatorTestCases()
-                .stream()
-                .filter(filter)
-                .collect(Collectors.toList());
-        checkArgument(!cases.isEmpty(), "no cases match %s/%s", userAgentFamily, operatingSystemFamily);
-        checkArgument(cases.size() == 1, "multiple cases match %s/%s", userAgentFamily, operatingSystemFamily);
-        return cases.get(0);
+        return NavigatorTestCorpus.getBuiltIn().getUnique(userAgentFamily, operatingSystemFamily);
     }
 
     public static ImmutableList<BrowserFingerprintTestCase> getNavigatorTestCases() {
-        try (Reader reader = Resources.asCharSource(Tests.class.getResource("/navigator-test-cases.json"), UTF_8).openStream()) {
-            BrowserFingerprintTestCase[] testCases = new Gson().fromJson(reader, BrowserFingerprintTestCase[].class);
-            checkState(testCases != null);
-            return ImmutableList.copyOf(testCases);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return NavigatorTestCorpus.getDefault().getAll();
     }
 
     public static File getBuildDir() {
@@ -133,18 +113,6 @@ public class Tests {
         WebDriverManager.chromedriver().setup();
     }
 
-    public static boolean filesEqual(Unzippage a, Unzippage b) throws IOException {
-        if (!ImmutableSet.copyOf(a.fileEntries()).equals(ImmutableSet.copyOf(b.fileEntries()))) {
-            return false;
-        }
-        for (String entry : a.fileEntries()) {
-            if (!a.getFileBytes(entry).contentEquals(b.getFileBytes(entry))) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static Unzippage pseudoUnzippage(Path parent) throws IOException {
         Collection<File> files = FileUtils.listFiles(parent.toFile(), null, true);
         Function<File, String> entryNameMapper = file -> FilenameUtils.normalizeNoEndSeparator(parent.relativize(file.toPath()).toString(), true) + (file.isDirectory() ? "/" : "");
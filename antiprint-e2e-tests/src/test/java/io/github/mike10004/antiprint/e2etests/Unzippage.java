@@ -28,8 +28,15 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
+import com.google.common.base.Strings;
 import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
 import org.junit.Test;
 
@@ -48,10 +55,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Random;
 import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.assertArrayEquals;
@@ -59,8 +70,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
- * Class that represents the result of unzipping a file. Use {@link #unzip(File)} or
- * {@link #unzip(InputStream)} create an instance.
+ * Class that represents the result of unzipping a file. Use {@link #unzip(File)},
+ * {@link #unzip(InputStream)}, or {@link #map(File)} to create an instance.
  */
 public abstract class Unzippage {
 
@@ -86,14 +97,27 @@ public abstract class Unzippage {
      */
     public abstract ByteSource getFileBytes(String fileEntry);
 
+    /**
+     * Returns the CRC-32 checksum of the decompressed bytes of a zip entry, if
+     * it is known without decompressing the entry. This implementation returns
+     * an empty optional.
+     * @param fileEntry the file entry
+     * @return the checksum, if known
+     */
+    public OptionalLong getFileCrc32(String fileEntry) {
+        return OptionalLong.empty();
+    }
+
     private static class CollectionUnzippage extends Unzippage {
 
         private final ImmutableList<String> directoryEntries;
         private final ImmutableMap<String, ByteSource> fileEntries;
+        private final ImmutableMap<String, Long> fileCrcs;
 
-        protected CollectionUnzippage(Iterable<String> directoryEntries, Map<String, ByteSource> fileEntries) {
+        protected CollectionUnzippage(Iterable<String> directoryEntries, Map<String, ByteSource> fileEntries, Map<String, Long> fileCrcs) {
             this.directoryEntries = ImmutableList.copyOf(directoryEntries);
             this.fileEntries = ImmutableMap.copyOf(fileEntries);
+            this.fileCrcs = ImmutableMap.copyOf(fileCrcs);
         }
 
         @Override
@@ -110,6 +134,12 @@ public abstract class Unzippage {
         public ByteSource getFileBytes(String fileEntry) {
             return fileEntries.get(fileEntry);
         }
+
+        @Override
+        public OptionalLong getFileCrc32(String fileEntry) {
+            Long crc = fileCrcs.get(fileEntry);
+            return crc == null ? OptionalLong.empty() : OptionalLong.of(crc);
+        }
     }
 
     /**
@@ -179,6 +209,19 @@ public abstract class Unzippage {
         }
     }
 
+    /**
+     * Indexes a zip file without decompressing its entries. The file is memory-mapped
+     * and only its central directory is read; an entry is decompressed each time a
+     * stream is opened from its byte source. Data preceding the zip data, such as
+     * the header of a CRX file, is skipped.
+     * @param zipPathname the pathname of the zip or CRX file
+     * @return the unzippage
+     * @throws IOException if the file cannot be mapped or is not a zip archive
+     */
+    public static Unzippage map(File zipPathname) throws IOException {
+        return MappedUnzippage.map(zipPathname);
+    }
+
     private interface ZipFacade {
         @Nullable
         EntryFacade next() throws IOException;
@@ -226,6 +269,7 @@ public abstract class Unzippage {
     private static Unzippage unzip(ZipFacade entryProvider) throws IOException {
         List<String> directoryEntries = new ArrayList<>();
         Map<String, byte[]> fileEntries = new HashMap<>();
+        Map<String, Long> fileCrcs = new HashMap<>();
         EntryFacade session;
         while ((session = entryProvider.next()) != null) {
             ZipEntry entry = session.getEntry();
@@ -239,9 +283,57 @@ public abstract class Unzippage {
                 }
                 baos.flush();
                 fileEntries.put(entry.getName(), baos.toByteArray());
+                // the checksum of a streamed entry is known once the entry has been read
+                if (entry.getCrc() != -1) {
+                    fileCrcs.put(entry.getName(), entry.getCrc());
+                }
+            }
+        }
+        return new CollectionUnzippage(directoryEntries, Maps.transformValues(fileEntries, ByteSource::wrap), fileCrcs);
+    }
+
+    /**
+     * Computes digests of the file entries of a zip file without retaining their
+     * bytes. The file is mapped as by {@link #map(File)}, so data preceding the
+     * zip data is skipped.
+     * @param zipPathname the pathname of the zip or CRX file
+     * @param hashFunction the hash function
+     * @return a map of file entry names to digests
+     * @throws IOException if something goes awry
+     */
+    public static ImmutableMap<String, HashCode> digest(File zipPathname, HashFunction hashFunction) throws IOException {
+        Unzippage unzippage = map(zipPathname);
+        ImmutableMap.Builder<String, HashCode> digests = ImmutableMap.builder();
+        for (String fileEntry : unzippage.fileEntries()) {
+            digests.put(fileEntry, unzippage.getFileBytes(fileEntry).hash(hashFunction));
+        }
+        return digests.build();
+    }
+
+    /**
+     * Computes digests of the file entries of zip data from an input stream,
+     * streaming each entry through the hash function without retaining its bytes.
+     * The stream must be open and positioned at the beginning of the zip data.
+     * @param inputStream the input stream
+     * @param hashFunction the hash function
+     * @return a map of file entry names to digests
+     * @throws IOException if something goes awry
+     */
+    public static ImmutableMap<String, HashCode> digest(InputStream inputStream, HashFunction hashFunction) throws IOException {
+        ZipFacade entryProvider = new StreamZipFacade(inputStream);
+        ImmutableMap.Builder<String, HashCode> digests = ImmutableMap.builder();
+        EntryFacade session;
+        while ((session = entryProvider.next()) != null) {
+            ZipEntry entry = session.getEntry();
+            if (!entry.isDirectory()) {
+                Hasher hasher = hashFunction.newHasher();
+                try (InputStream input = session.openStream()) {
+                    ByteStreams.copy(input, Funnels.asOutputStream(hasher));
+                }
+                digests.put(entry.getName(), hasher.hash());
             }
         }
-        return new CollectionUnzippage(directoryEntries, Maps.transformValues(fileEntries, ByteSource::wrap));
+        return digests.build();
     }
 
     public static class UnzippageTest {
@@ -285,6 +377,70 @@ public abstract class Unzippage {
             check(unzippage);
         }
 
+        @Test
+        public void mapFile() throws Exception {
+            File zipFile = File.createTempFile("reference", ".zip");
+            Files.write(zipFile.toPath(), getReferenceZipBytes());
+            Unzippage unzippage = map(zipFile);
+            check(unzippage);
+        }
+
+        @Test
+        public void mapFile_prefixed() throws Exception {
+            byte[] prefix = "Cr24 arbitrary header bytes".getBytes(US_ASCII);
+            File crxFile = File.createTempFile("reference", ".crx");
+            Files.write(crxFile.toPath(), Bytes.concat(prefix, getReferenceZipBytes()));
+            Unzippage unzippage = map(crxFile);
+            check(unzippage);
+        }
+
+        @Test
+        public void mapFile_storedAndDeflated() throws Exception {
+            Random random = new Random(Unzippage.class.hashCode());
+            byte[] text = Strings.repeat("function f() { return 1; }\n", 1000).getBytes(US_ASCII);
+            byte[] binary = new byte[100_000];
+            random.nextBytes(binary);
+            CRC32 crc = new CRC32();
+            crc.update(binary);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (ZipOutputStream zout = new ZipOutputStream(buffer)) {
+                zout.putNextEntry(new ZipEntry("deflated.js"));
+                zout.write(text);
+                zout.putNextEntry(new ZipEntry("empty"));
+                ZipEntry stored = new ZipEntry("d/stored.bin");
+                stored.setMethod(ZipEntry.STORED);
+                stored.setSize(binary.length);
+                stored.setCompressedSize(binary.length);
+                stored.setCrc(crc.getValue());
+                zout.putNextEntry(stored);
+                zout.write(binary);
+                zout.putNextEntry(new ZipEntry("d/"));
+            }
+            File zipFile = File.createTempFile("stored-and-deflated", ".zip");
+            Files.write(zipFile.toPath(), buffer.toByteArray());
+            Unzippage unzippage = map(zipFile);
+            assertEquals("files", ImmutableList.of("deflated.js", "empty", "d/stored.bin"), ImmutableList.copyOf(unzippage.fileEntries()));
+            assertEquals("directories", ImmutableList.of("d/"), ImmutableList.copyOf(unzippage.directoryEntries()));
+            assertArrayEquals("deflated", text, unzippage.getFileBytes("deflated.js").read());
+            assertArrayEquals("empty", new byte[0], unzippage.getFileBytes("empty").read());
+            assertArrayEquals("stored", binary, unzippage.getFileBytes("d/stored.bin").read());
+            assertEquals("size", text.length, unzippage.getFileBytes("deflated.js").size());
+            assertTrue("same as eager unzip", ArchiveDiff.equal(unzip(zipFile), unzippage));
+            assertEquals("crc", OptionalLong.of(crc.getValue()), unzippage.getFileCrc32("d/stored.bin"));
+        }
+
+        @Test
+        public void digest_fileAndStream() throws Exception {
+            byte[] bytes = getReferenceZipBytes();
+            File zipFile = File.createTempFile("reference", ".zip");
+            Files.write(zipFile.toPath(), bytes);
+            Map<String, HashCode> expected = Maps.transformValues(requiredReferenceFiles, b -> Hashing.sha256().hashBytes(b));
+            assertEquals("from file", expected, digest(zipFile, Hashing.sha256()));
+            try (InputStream stream = new ByteArrayInputStream(bytes)) {
+                assertEquals("from stream", expected, digest(stream, Hashing.sha256()));
+            }
+        }
+
         private static byte[] getReferenceZipBytes() {
             return Base64.getDecoder().decode(REFERENCE_ZIP_BASE64);
         }
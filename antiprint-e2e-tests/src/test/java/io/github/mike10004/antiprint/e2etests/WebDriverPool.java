@@ -0,0 +1,342 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.mike10004.antiprint.e2etests.WebDriverProvider.DriverPlusService;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Pool of webdriver sessions that are created ahead of time. A session is
+ * {@link #lease(Duration) leased} to a caller, and when the lease is closed,
+ * the session is reset in the background and returned to the pool. Idle
+ * sessions are checked periodically and replaced if they are unresponsive.
+ *
+ * <p>The provider is responsible for installing extensions, so a session
+ * taken from a pool built on {@link FirefoxDriverProvider} already has
+ * antiprint installed.
+ * @param <W> webdriver type
+ */
+public class WebDriverPool<W extends WebDriver> implements Closeable {
+
+    private final WebDriverProvider<W> provider;
+    private final Map<String, String> environment;
+    private final int size;
+    private final Duration healthCheckInterval;
+    private final SessionReset<? super W> reset;
+    private final BlockingQueue<DriverPlusService<W>> idle;
+    private final Set<DriverPlusService<W>> live;
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger failureCount;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a pool that uses the {@link #standardReset() standard reset}.
+     * @param provider webdriver provider
+     * @param environment environment passed to the provider
+     * @param size number of sessions to keep
+     * @param healthCheckInterval interval between checks of idle sessions
+     */
+    public WebDriverPool(WebDriverProvider<W> provider, Map<String, String> environment, int size, Duration healthCheckInterval) {
+        this(provider, environment, size, healthCheckInterval, standardReset());
+    }
+
+    public WebDriverPool(WebDriverProvider<W> provider, Map<String, String> environment, int size, Duration healthCheckInterval, SessionReset<? super W> reset) {
+        checkArgument(size > 0, "size must be positive");
+        checkArgument(!healthCheckInterval.isNegative() && !healthCheckInterval.isZero(), "health check interval must be positive");
+        this.provider = Objects.requireNonNull(provider);
+        this.environment = Objects.requireNonNull(environment);
+        this.size = size;
+        this.healthCheckInterval = healthCheckInterval;
+        this.reset = Objects.requireNonNull(reset);
+        idle = new LinkedBlockingQueue<>();
+        live = ConcurrentHashMap.newKeySet();
+        executor = Executors.newScheduledThreadPool(size, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("webdriver-pool-%d")
+                .build());
+        failureCount = new AtomicInteger();
+    }
+
+    /**
+     * Interface of a service that returns a session to a clean state.
+     * @param <W> webdriver type
+     */
+    public interface SessionReset<W extends WebDriver> {
+
+        /**
+         * Resets a session. If this method throws an exception, the session is discarded.
+         * @param driver the driver
+         */
+        void reset(W driver);
+    }
+
+    /**
+     * Returns a reset that closes all windows but one, deletes cookies, clears
+     * web storage, and navigates to {@code about:blank}. Cookies and storage
+     * are cleared for the origin of the page that is open when the lease is closed.
+     * @return the standard reset
+     */
+    public static SessionReset<WebDriver> standardReset() {
+        return driver -> {
+            Set<String> handles = driver.getWindowHandles();
+            String retained = handles.iterator().next();
+            for (String handle : handles) {
+                if (!retained.equals(handle)) {
+                    driver.switchTo().window(handle);
+                    driver.close();
+                }
+            }
+            driver.switchTo().window(retained);
+            driver.manage().deleteAllCookies();
+            if (driver instanceof JavascriptExecutor) {
+                try {
+                    ((JavascriptExecutor) driver).executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+                } catch (WebDriverException ignore) {
+                    // pages like about:blank have no storage
+                }
+            }
+            driver.get("about:blank");
+        };
+    }
+
+    /**
+     * Starts creating sessions. This method returns immediately.
+     * @return this instance
+     */
+    public WebDriverPool<W> start() {
+        checkState(!closed, "pool is closed");
+        for (int i = 0; i < size; i++) {
+            submit(this::replenish);
+        }
+        executor.scheduleWithFixedDelay(this::checkIdle, healthCheckInterval.toMillis(), healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Leases a session, waiting if none is idle.
+     * @param timeout maximum duration to wait
+     * @return the lease; close it to return the session to the pool
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if no session becomes idle before the timeout
+     */
+    public Lease lease(Duration timeout) throws InterruptedException, TimeoutException {
+        checkState(!closed, "pool is closed");
+        DriverPlusService<W> session = idle.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (session == null) {
+            throw new TimeoutException("no session became available within " + timeout);
+        }
+        return new Lease(session);
+    }
+
+    /**
+     * Class that represents a session leased from a pool.
+     */
+    public class Lease implements Closeable {
+
+        private final DriverPlusService<W> session;
+        private boolean returned;
+        private boolean invalidated;
+
+        private Lease(DriverPlusService<W> session) {
+            this.session = session;
+        }
+
+        public W getDriver() {
+            checkState(!returned, "lease has been closed");
+            return session.driver;
+        }
+
+        /**
+         * Marks the session as unusable, so that it is discarded and replaced instead of reset.
+         */
+        public void invalidate() {
+            invalidated = true;
+        }
+
+        /**
+         * Returns the session to the pool. The session is reset in the background.
+         */
+        @Override
+        public synchronized void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            if (invalidated) {
+                discardAndReplace(session);
+            } else if (!submit(() -> release(session))) {
+                quit(session);
+            }
+        }
+    }
+
+    private void release(DriverPlusService<W> session) {
+        try {
+            reset.reset(session.driver);
+        } catch (RuntimeException e) {
+            failureCount.incrementAndGet();
+            discardAndReplace(session);
+            return;
+        }
+        returnToIdle(session);
+    }
+
+    private void replenish() {
+        if (closed) {
+            return;
+        }
+        DriverPlusService<W> session;
+        try {
+            session = provider.provideBoth(environment);
+        } catch (IOException | RuntimeException e) {
+            failureCount.incrementAndGet();
+            schedule(this::replenish, healthCheckInterval);
+            return;
+        }
+        live.add(session);
+        returnToIdle(session);
+    }
+
+    private void checkIdle() {
+        List<DriverPlusService<W>> snapshot = new ArrayList<>(idle);
+        for (DriverPlusService<W> session : snapshot) {
+            if (closed) {
+                return;
+            }
+            // a session that was leased in the meantime is not checked
+            if (idle.remove(session)) {
+                if (isHealthy(session)) {
+                    returnToIdle(session);
+                } else {
+                    failureCount.incrementAndGet();
+                    discardAndReplace(session);
+                }
+            }
+        }
+    }
+
+    private void returnToIdle(DriverPlusService<W> session) {
+        idle.offer(session);
+        // the pool may have been closed after the idle queue was drained
+        if (closed && idle.remove(session)) {
+            quit(session);
+        }
+    }
+
+    private boolean isHealthy(DriverPlusService<W> session) {
+        if (!session.service.isRunning()) {
+            return false;
+        }
+        try {
+            session.driver.getWindowHandles();
+            return true;
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    private void discardAndReplace(DriverPlusService<W> session) {
+        boolean submitted = submit(() -> {
+            quit(session);
+            replenish();
+        });
+        if (!submitted) {
+            quit(session);
+        }
+    }
+
+    /**
+     * Quits a session if it has not been quit already.
+     */
+    private void quit(DriverPlusService<W> session) {
+        if (!live.remove(session)) {
+            return;
+        }
+        try {
+            session.driver.quit();
+        } catch (RuntimeException ignore) {
+            // the session may already be dead
+        } finally {
+            session.stopService();
+        }
+    }
+
+    /**
+     * Submits a task for execution.
+     * @return false if the task was rejected because the pool is closed
+     */
+    private boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (!closed) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    private void schedule(Runnable task, Duration delay) {
+        try {
+            executor.schedule(task, delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (!closed) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of sessions that are ready to be leased.
+     * @return count of idle sessions
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of times a session could not be created or reset, or failed a health check.
+     * @return count of failures
+     */
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Closes this pool and quits every session it created, including sessions
+     * that are leased or waiting to be reset. Closing a lease after the pool
+     * is closed has no effect.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // queued reset and replacement tasks are dropped; the sessions they
+        // would have handled are still live, so they are quit below
+        executor.shutdownNow();
+        idle.clear();
+        new ArrayList<>(live).forEach(this::quit);
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.mike10004.antiprint.e2etests;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WebDriverPoolTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static class FakeSession {
+
+        public volatile boolean healthy = true;
+        public volatile boolean quit;
+        public final AtomicInteger resetCount = new AtomicInteger();
+        public final WebDriver driver;
+        public final FakeService service;
+
+        public FakeSession() throws IOException {
+            service = new FakeService();
+            driver = (WebDriver) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{WebDriver.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getWindowHandles":
+                        if (!healthy) {
+                            throw new WebDriverException("session is dead");
+                        }
+                        return ImmutableSet.of("window-1");
+                    case "quit":
+                        quit = true;
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "FakeDriver@" + System.identityHashCode(proxy);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    private static class FakeService extends DriverService {
+
+        public volatile boolean stopped;
+
+        public FakeService() throws IOException {
+            super(new File("fake-driver-executable"), 0, ImmutableList.of(), ImmutableMap.of());
+        }
+
+        @Override
+        public boolean isRunning() {
+            return !stopped;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+    }
+
+    private static class FakeProvider implements WebDriverProvider<WebDriver> {
+
+        public final List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+
+        @Override
+        public DriverPlusService<WebDriver> provideBoth(Map<String, String> environment, int port) throws IOException {
+            FakeSession session = new FakeSession();
+            sessions.add(session);
+            return new DriverPlusService<>(session.driver, session.service);
+        }
+
+        public FakeSession find(WebDriver driver) {
+            return sessions.stream().filter(s -> s.driver == driver).findFirst().orElseThrow(IllegalArgumentException::new);
+        }
+    }
+
+    private static void await(String message, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("timed out waiting for " + message);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void leaseAndReturn() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        WebDriverPool<WebDriver> pool = new WebDriverPool<>(provider, Collections.emptyMap(), 2, Duration.ofMinutes(1), driver -> provider.find(driver).resetCount.incrementAndGet());
+        try {
+            pool.start();
+            await("warm sessions", () -> pool.getIdleCount() == 2);
+            WebDriverPool<WebDriver>.Lease first = pool.lease(TIMEOUT);
+            WebDriverPool<WebDriver>.Lease second = pool.lease(TIMEOUT);
+            assertNotSame("distinct sessions", first.getDriver(), second.getDriver());
+            try {
+                pool.lease(Duration.ofMillis(100));
+                fail("should have timed out");
+            } catch (TimeoutException ignore) {
+            }
+            WebDriver driver = first.getDriver();
+            first.close();
+            await("returned session", () -> pool.getIdleCount() == 1);
+            assertEquals("reset count", 1, provider.find(driver).resetCount.get());
+            try (WebDriverPool<WebDriver>.Lease third = pool.lease(TIMEOUT)) {
+                assertSame("reused session", driver, third.getDriver());
+            }
+            second.invalidate();
+            second.close();
+            await("replacement session", () -> provider.sessions.size() == 3 && pool.getIdleCount() == 2);
+            assertTrue("invalidated session quit", provider.sessions.get(1).quit);
+        } finally {
+            pool.close();
+        }
+        provider.sessions.forEach(session -> assertTrue("stopped after close", session.service.stopped));
+    }
+
+    @Test
+    public void healthCheckReplacesDeadSession() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        try (WebDriverPool<WebDriver> pool = new WebDriverPool<>(provider, Collections.emptyMap(), 1, Duration.ofMillis(50), driver -> {})) {
+            pool.start();
+            await("warm session", () -> pool.getIdleCount() == 1);
+            FakeSession original = provider.sessions.get(0);
+            original.healthy = false;
+            await("replacement", () -> provider.sessions.size() == 2 && pool.getIdleCount() == 1);
+            assertTrue("dead session stopped", original.service.stopped);
+            assertEquals("failures", 1, pool.getFailureCount());
+            try (WebDriverPool<WebDriver>.Lease lease = pool.lease(TIMEOUT)) {
+                assertSame("replacement leased", provider.sessions.get(1).driver, lease.getDriver());
+            }
+        }
+    }
+
+    @Test
+    public void failedResetDiscardsSession() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        try (WebDriverPool<WebDriver> pool = new WebDriverPool<>(provider, Collections.emptyMap(), 1, Duration.ofMinutes(1), driver -> {
+            throw new WebDriverException("reset failed");
+        })) {
+            pool.start();
+            pool.lease(TIMEOUT).close();
+            await("replacement", () -> provider.sessions.size() == 2 && pool.getIdleCount() == 1);
+            assertTrue("discarded session quit", provider.sessions.get(0).quit);
+        }
+    }
+
+    @Test
+    public void closeQuitsSessionsBeingReset() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        CountDownLatch resetStarted = new CountDownLatch(1);
+        CountDownLatch resetBlocker = new CountDownLatch(1);
+        WebDriverPool<WebDriver> pool = new WebDriverPool<>(provider, Collections.emptyMap(), 2, Duration.ofMinutes(1), driver -> {
+            resetStarted.countDown();
+            try {
+                resetBlocker.await();
+            } catch (InterruptedException ignore) {
+            }
+        });
+        try {
+            pool.start();
+            await("warm sessions", () -> pool.getIdleCount() == 2);
+            WebDriverPool<WebDriver>.Lease returned = pool.lease(TIMEOUT);
+            WebDriverPool<WebDriver>.Lease held = pool.lease(TIMEOUT);
+            returned.close();
+            assertTrue("reset started", resetStarted.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+            pool.close();
+            held.close();
+        } finally {
+            resetBlocker.countDown();
+        }
+        assertEquals("sessions created", 2, provider.sessions.size());
+        provider.sessions.forEach(session -> {
+            assertTrue("quit after close", session.quit);
+            assertTrue("stopped after close", session.service.stopped);
+        });
+    }
+}
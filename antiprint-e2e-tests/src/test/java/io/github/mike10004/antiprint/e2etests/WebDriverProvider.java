@@ -5,6 +5,7 @@ import org.openqa.selenium.remote.service.DriverService;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Objects;
 
 public interface WebDriverProvider<W extends WebDriver> {
 
@@ -12,16 +13,65 @@ public interface WebDriverProvider<W extends WebDriver> {
         return provideBoth(environment).driver;
     }
 
-    DriverPlusService<W> provideBoth(Map<String, String> environment) throws IOException;
+    /**
+     * Provides a driver and the service it talks to. The service listens on any free port.
+     * @param environment environment for the driver service process
+     * @return the driver and service
+     * @throws IOException on I/O error
+     */
+    default DriverPlusService<W> provideBoth(Map<String, String> environment) throws IOException {
+        return provideBoth(environment, ANY_FREE_PORT);
+    }
+
+    /**
+     * Provides a driver and the service it talks to.
+     * @param environment environment for the driver service process
+     * @param port port for the driver service to listen on, or {@link #ANY_FREE_PORT}
+     * @return the driver and service
+     * @throws IOException on I/O error
+     */
+    DriverPlusService<W> provideBoth(Map<String, String> environment, int port) throws IOException;
+
+    /**
+     * Port value that means the driver service may listen on any free port.
+     */
+    int ANY_FREE_PORT = 0;
 
     class DriverPlusService<W extends WebDriver> {
 
         public final W driver;
         public final DriverService service;
+        private final Runnable afterStop;
 
         public DriverPlusService(W driver, DriverService service) {
+            this(driver, service, () -> {});
+        }
+
+        /**
+         * Constructs an instance.
+         * @param driver the driver
+         * @param service the service, or null
+         * @param afterStop action that releases other resources of the session,
+         * such as its profile directory; run after the service is stopped
+         */
+        public DriverPlusService(W driver, DriverService service, Runnable afterStop) {
             this.driver = driver;
             this.service = service;
+            this.afterStop = Objects.requireNonNull(afterStop);
+        }
+
+        /**
+         * Stops the service, if there is one, and then releases the other resources of the session.
+         * Call this after the driver has quit, or to end a session whose driver failed to quit.
+         */
+        public void stopService() {
+            try {
+                if (service != null) {
+                    service.stop();
+                }
+            } finally {
+                afterStop.run();
+            }
         }
     }
 }
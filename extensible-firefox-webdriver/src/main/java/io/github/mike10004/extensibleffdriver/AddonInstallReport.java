@@ -0,0 +1,115 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Class that represents the outcomes of a batch of addon installations.
+ * Outcomes are listed in the same order as the requests.
+ */
+public final class AddonInstallReport {
+
+    private final ImmutableList<Outcome> outcomes;
+
+    AddonInstallReport(List<Outcome> outcomes) {
+        this.outcomes = ImmutableList.copyOf(outcomes);
+    }
+
+    /**
+     * Gets the outcomes of all installation requests.
+     * @return the outcomes, in request order
+     */
+    public ImmutableList<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * Gets the outcomes of the installation requests that failed.
+     * @return the failed outcomes, in request order
+     */
+    public ImmutableList<Outcome> getFailures() {
+        return outcomes.stream().filter(outcome -> !outcome.isSuccess()).collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Checks whether all addons were installed.
+     * @return true if every installation request succeeded
+     */
+    public boolean isAllSucceeded() {
+        return outcomes.stream().allMatch(Outcome::isSuccess);
+    }
+
+    @Override
+    public String toString() {
+        return "AddonInstallReport{" +
+                "outcomes=" + outcomes.size() +
+                ", failures=" + getFailures().size() +
+                '}';
+    }
+
+    /**
+     * Class that represents the outcome of a single installation request.
+     */
+    public static final class Outcome {
+
+        private final int index;
+        private final AddonInstallRequest request;
+        @Nullable
+        private final InstalledAddon installedAddon;
+        @Nullable
+        private final Throwable failure;
+
+        Outcome(int index, AddonInstallRequest request, @Nullable InstalledAddon installedAddon, @Nullable Throwable failure) {
+            this.index = index;
+            this.request = Objects.requireNonNull(request);
+            this.installedAddon = installedAddon;
+            this.failure = failure;
+        }
+
+        /**
+         * Gets the position of the request in the batch.
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public AddonInstallRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * Gets the installed addon.
+         * @return the installed addon, or null if the installation failed
+         */
+        @Nullable
+        public InstalledAddon getInstalledAddon() {
+            return installedAddon;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /**
+         * Gets the exception that caused the installation to fail.
+         * @return the exception, or null if the installation succeeded
+         */
+        @Nullable
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return "Outcome{" +
+                    "index=" + index +
+                    ", installedAddon=" + installedAddon +
+                    ", failure=" + failure +
+                    '}';
+        }
+    }
+}
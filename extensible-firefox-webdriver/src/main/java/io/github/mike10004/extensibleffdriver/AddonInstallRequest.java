@@ -1,6 +1,10 @@
 package io.github.mike10004.extensibleffdriver;
 
+import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
+
 import java.io.File;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
 
@@ -35,8 +39,31 @@ public interface AddonInstallRequest {
         };
     }
 
+    /**
+     * Constructs a request instance from the pathname of an unpacked addon directory.
+     * The directory is loaded in place, which avoids packing the addon for each
+     * session. Firefox only accepts a directory for a
+     * {@link AddonPersistence#TEMPORARY temporary} addon.
+     * @param directory pathname of the directory containing the addon manifest
+     * @param persistence session persistence of the addon
+     * @return the request instance
+     */
+    static AddonInstallRequest fromDirectory(File directory, AddonPersistence persistence) {
+        Objects.requireNonNull(directory, "directory");
+        Objects.requireNonNull(persistence, "persistence");
+        return new AddonInstallRequest() {
+            @Override
+            public void toParameters(Map<String, Object> params) {
+                params.put("path", directory.getAbsolutePath());
+                params.put("temporary", persistence == AddonPersistence.TEMPORARY);
+            }
+        };
+    }
+
     /**
      * Constructs a request instance from the base-64-encoded bytes of an addon zip file.
+     * To install the same zip in many sessions without encoding it each time, use
+     * an {@link EncodedAddonCache} instead.
      * @param zipBytesBase64 the zip bytes
      * @param persistence session persistence of the addon
      * @return the request instance
@@ -54,4 +81,42 @@ public interface AddonInstallRequest {
         };
     }
 
+    /**
+     * Constructs a request instance from the pathname of an addon zip file. Unlike
+     * {@link #fromFile(File, AddonPersistence)}, the zip bytes are sent in the request
+     * instead of the pathname, so the file need not be accessible to the driver service.
+     * The bytes are base-64-encoded as the request body is written, so the encoded
+     * zip is never held in memory in its entirety.
+     * @param zipPath pathname of the addon zip
+     * @param persistence session persistence of the addon
+     * @return the request instance
+     */
+    static AddonInstallRequest fromPath(Path zipPath, AddonPersistence persistence) {
+        Objects.requireNonNull(zipPath, "zip path");
+        return fromByteSource(MoreFiles.asByteSource(zipPath), persistence);
+    }
+
+    /**
+     * Constructs a request instance from a source of addon zip bytes. The bytes
+     * are base-64-encoded as the request body is written, so the encoded zip is
+     * never held in memory in its entirety. The value of the {@code addon} parameter
+     * populated by {@link #toParameters(Map)} is an opaque object that only the
+     * driver's command executor knows how to serialize.
+     * @param zipBytes the zip bytes
+     * @param persistence session persistence of the addon
+     * @return the request instance
+     */
+    static AddonInstallRequest fromByteSource(ByteSource zipBytes, AddonPersistence persistence) {
+        Objects.requireNonNull(zipBytes, "zip bytes");
+        Objects.requireNonNull(persistence, "persistence");
+        AddonPayload payload = AddonPayload.fromByteSource(zipBytes);
+        return new AddonInstallRequest() {
+            @Override
+            public void toParameters(Map<String, Object> parameters) {
+                parameters.put("addon", payload);
+                parameters.put("temporary", persistence == AddonPersistence.TEMPORARY);
+            }
+        };
+    }
+
 }
@@ -0,0 +1,176 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteSource;
+
+import javax.annotation.Nullable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Class that represents addon zip bytes that are to be base-64-encoded
+ * directly into a request body. An instance of this class may be the value
+ * of a request parameter, in which case the command executor streams the
+ * encoded bytes instead of serializing a string.
+ */
+abstract class AddonPayload {
+
+    public static AddonPayload fromByteSource(ByteSource zipBytes) {
+        return new StreamingPayload(zipBytes);
+    }
+
+    /**
+     * Creates a payload whose encoding has already been computed.
+     * @param base64 the base-64 encoding of the zip bytes, as ASCII bytes
+     * @param sha256 the SHA-256 hash of the zip bytes
+     * @return the payload
+     */
+    public static AddonPayload preEncoded(byte[] base64, HashCode sha256) {
+        return new PreEncodedPayload(base64, sha256);
+    }
+
+    /**
+     * Returns the byte source that supplies the unencoded zip bytes.
+     * @return the byte source
+     */
+    public abstract ByteSource getZipBytes();
+
+    /**
+     * Gets the SHA-256 hash of the zip bytes, if it is known without reading the bytes.
+     * The hash of a payload that is encoded as it is written becomes known once
+     * the encoding has been written.
+     * @return the hash, or null if unknown
+     */
+    @Nullable
+    public HashCode sha256IfKnown() {
+        return null;
+    }
+
+    /**
+     * Gets the length of the base-64 encoding of the zip bytes, if it can be
+     * determined without reading the bytes.
+     * @return the encoded length, or -1 if unknown
+     */
+    public abstract long base64Length();
+
+    /**
+     * Writes the base-64 encoding of the zip bytes to an output stream.
+     * The output stream is not closed.
+     * @param out the output stream
+     * @throws IOException on I/O error
+     */
+    public abstract void writeBase64(OutputStream out) throws IOException;
+
+    private static class StreamingPayload extends AddonPayload {
+
+        private final ByteSource zipBytes;
+        private volatile HashCode sha256;
+
+        private StreamingPayload(ByteSource zipBytes) {
+            this.zipBytes = Objects.requireNonNull(zipBytes, "zip bytes");
+        }
+
+        @Override
+        public ByteSource getZipBytes() {
+            return zipBytes;
+        }
+
+        @Nullable
+        @Override
+        public HashCode sha256IfKnown() {
+            return sha256;
+        }
+
+        @Override
+        public long base64Length() {
+            Optional<Long> size = zipBytes.sizeIfKnown();
+            if (!size.isPresent()) {
+                return -1;
+            }
+            return 4 * ((size.get() + 2) / 3);
+        }
+
+        @Override
+        public void writeBase64(OutputStream out) throws IOException {
+            try (OutputStream encodingStream = Base64.getEncoder().wrap(new NonClosingOutputStream(out))) {
+                HashingOutputStream hashingStream = new HashingOutputStream(Hashing.sha256(), encodingStream);
+                zipBytes.copyTo(hashingStream);
+                sha256 = hashingStream.hash();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "AddonPayload{" +
+                    "zipBytes=" + zipBytes +
+                    '}';
+        }
+    }
+
+    private static class PreEncodedPayload extends AddonPayload {
+
+        private final byte[] base64;
+        private final HashCode sha256;
+
+        private PreEncodedPayload(byte[] base64, HashCode sha256) {
+            this.base64 = Objects.requireNonNull(base64, "base64");
+            this.sha256 = Objects.requireNonNull(sha256, "sha256");
+        }
+
+        @Override
+        public ByteSource getZipBytes() {
+            return BaseEncoding.base64().decodingSource(ByteSource.wrap(base64).asCharSource(US_ASCII));
+        }
+
+        @Nullable
+        @Override
+        public HashCode sha256IfKnown() {
+            return sha256;
+        }
+
+        @Override
+        public long base64Length() {
+            return base64.length;
+        }
+
+        @Override
+        public void writeBase64(OutputStream out) throws IOException {
+            out.write(base64);
+        }
+
+        @Override
+        public String toString() {
+            return "AddonPayload{" +
+                    "sha256=" + sha256 +
+                    ", base64Length=" + base64.length +
+                    '}';
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        public NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+}
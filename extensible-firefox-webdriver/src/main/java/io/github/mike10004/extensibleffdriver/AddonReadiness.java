@@ -0,0 +1,70 @@
+package io.github.mike10004.extensibleffdriver;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Class that waits for an addon to signal that its content scripts are active
+ * in the current page. An addon signals readiness by adding its id to the
+ * space-separated list of ids in the {@value #ATTRIBUTE} attribute of the
+ * document element. The wait is a single asynchronous script execution that
+ * observes attribute mutations, so it completes as soon as the attribute
+ * changes, without polling.
+ */
+final class AddonReadiness {
+
+    /**
+     * Name of the document element attribute in which addons signal readiness.
+     */
+    public static final String ATTRIBUTE = "data-addon-ready";
+
+    private static final String AWAIT_SCRIPT = "const [attribute, id, timeoutMs] = arguments;\n" +
+            "const callback = arguments[arguments.length - 1];\n" +
+            "const root = document.documentElement;\n" +
+            "const isReady = () => (root.getAttribute(attribute) || '').split(/\\s+/).indexOf(id) >= 0;\n" +
+            "if (isReady()) {\n" +
+            "  callback(true);\n" +
+            "  return;\n" +
+            "}\n" +
+            "let timer;\n" +
+            "const observer = new MutationObserver(() => {\n" +
+            "  if (isReady()) {\n" +
+            "    observer.disconnect();\n" +
+            "    clearTimeout(timer);\n" +
+            "    callback(true);\n" +
+            "  }\n" +
+            "});\n" +
+            "observer.observe(root, {attributes: true, attributeFilter: [attribute]});\n" +
+            "timer = setTimeout(() => {\n" +
+            "  observer.disconnect();\n" +
+            "  callback(isReady());\n" +
+            "}, timeoutMs);\n";
+
+    private AddonReadiness() {}
+
+    /**
+     * Waits for an addon to signal readiness in the current page.
+     * If the session's script timeout is shorter than the given timeout,
+     * the wait ends when the script times out.
+     * @param executor the script executor
+     * @param id the addon id
+     * @param timeout maximum duration to wait
+     * @return true if the addon signaled readiness before the timeout
+     */
+    public static boolean await(JavascriptExecutor executor, String id, Duration timeout) {
+        Objects.requireNonNull(id, "id");
+        checkArgument(!timeout.isNegative(), "timeout must be nonnegative");
+        checkArgument(id.matches("\\S+"), "id must be nonempty and not contain whitespace: %s", id);
+        try {
+            Object ready = executor.executeAsyncScript(AWAIT_SCRIPT, ATTRIBUTE, id, timeout.toMillis());
+            return Boolean.TRUE.equals(ready);
+        } catch (ScriptTimeoutException e) {
+            return false;
+        }
+    }
+}
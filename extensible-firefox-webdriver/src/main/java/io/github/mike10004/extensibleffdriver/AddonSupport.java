@@ -1,34 +1,55 @@
 package io.github.mike10004.extensibleffdriver;
 
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
 import io.github.mike10004.extensibleffdriver.LimitedCommandExecutor.Commands;
-import org.openqa.selenium.firefox.GeckoDriverService;
 import org.openqa.selenium.remote.Command;
 import org.openqa.selenium.remote.Response;
 import org.openqa.selenium.remote.SessionId;
-import org.openqa.selenium.remote.internal.OkHttpClient;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.service.DriverService;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-class AddonSupport {
+class AddonSupport implements Closeable {
 
     private final Supplier<? extends SessionId> parentDriver;
     private final LimitedCommandExecutor commandExecutor;
+    private final Map<String, InstalledAddon> installed;
 
-    public AddonSupport(Supplier<? extends SessionId> parentDriver, GeckoDriverService driverService) {
+    public AddonSupport(Supplier<? extends SessionId> parentDriver, DriverService driverService, HttpClient.Factory httpClientFactory) {
+        this(parentDriver, LimitedCommandExecutor.forService(driverService, httpClientFactory));
+    }
+
+    AddonSupport(Supplier<? extends SessionId> parentDriver, LimitedCommandExecutor commandExecutor) {
         this.parentDriver = Objects.requireNonNull(parentDriver);
-        commandExecutor = LimitedCommandExecutor.forService(driverService, new OkHttpClient.Factory());
+        this.commandExecutor = Objects.requireNonNull(commandExecutor);
+        installed = Collections.synchronizedMap(new LinkedHashMap<>());
     }
 
     /**
      * Installs an addon.
      * @param request installation request parameters
+     * @return the installed addon
      * @throws IOException
      */
-    public void installAddon(AddonInstallRequest request) throws IOException {
+    public InstalledAddon installAddon(AddonInstallRequest request) throws IOException {
         Map<String, Object> params = new HashMap<>();
         request.toParameters(params);
         Command command = new Command(parentDriver.get(), Commands.NAME_INSTALL_ADDON, params);
@@ -36,6 +57,7 @@ class AddonSupport {
         if (!isSuccess(response)) {
             throw new NonSuccessResponseException(response);
         }
+        return registerInstalled(response, params);
     }
 
     /**
@@ -51,6 +73,159 @@ class AddonSupport {
         if (!isSuccess(response)) {
             throw new NonSuccessResponseException(response);
         }
+        installed.remove(request.getId());
+    }
+
+    /**
+     * Installs an addon asynchronously.
+     * @param request installation request parameters
+     * @param deadline maximum duration to wait for the installation to complete
+     * @return a future that completes with the installed addon
+     */
+    public CompletableFuture<InstalledAddon> installAddonAsync(AddonInstallRequest request, Duration deadline) {
+        Map<String, Object> params = new HashMap<>();
+        request.toParameters(params);
+        Command command = new Command(parentDriver.get(), Commands.NAME_INSTALL_ADDON, params);
+        return executeAsync(command, deadline, response -> {
+            try {
+                return registerInstalled(response, params);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Uninstalls an addon asynchronously.
+     * @param request uninstallation request parameters
+     * @param deadline maximum duration to wait for the uninstallation to complete
+     * @return a future that completes when the addon is uninstalled
+     */
+    public CompletableFuture<Void> uninstallAddonAsync(AddonUninstallRequest request, Duration deadline) {
+        Map<String, Object> params = new HashMap<>();
+        request.toParameters(params);
+        Command command = new Command(parentDriver.get(), Commands.NAME_UNINSTALL_ADDON, params);
+        return executeAsync(command, deadline, response -> {
+            installed.remove(request.getId());
+            return null;
+        });
+    }
+
+    /**
+     * Installs multiple addons concurrently. The returned future always completes normally
+     * unless it is cancelled, in which case the pending installations are cancelled too.
+     * @param requests installation requests
+     * @param deadline maximum duration to wait for each installation
+     * @return a future report of the outcomes
+     */
+    public CompletableFuture<AddonInstallReport> installAddonsAsync(List<AddonInstallRequest> requests, Duration deadline) {
+        List<CompletableFuture<InstalledAddon>> installations = new ArrayList<>(requests.size());
+        List<CompletableFuture<AddonInstallReport.Outcome>> outcomes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            AddonInstallRequest request = requests.get(i);
+            CompletableFuture<InstalledAddon> installation = installAddonAsync(request, deadline);
+            installations.add(installation);
+            outcomes.add(installation.handle((addon, error) -> new AddonInstallReport.Outcome(index, request, addon, unwrap(error))));
+        }
+        CompletableFuture<AddonInstallReport> report = CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0]))
+                .thenApply(ignore -> new AddonInstallReport(outcomes.stream().map(CompletableFuture::join).collect(Collectors.toList())));
+        report.whenComplete((ignore, error) -> {
+            if (report.isCancelled()) {
+                installations.forEach(installation -> installation.cancel(true));
+            }
+        });
+        return report;
+    }
+
+    /**
+     * Gets the addons installed by this instance that have not been uninstalled.
+     * @return the installed addons, in installation order
+     */
+    public ImmutableList<InstalledAddon> getInstalledAddons() {
+        synchronized (installed) {
+            return ImmutableList.copyOf(installed.values());
+        }
+    }
+
+    /**
+     * Uninstalls all addons installed by this instance. The uninstallation requests
+     * are dispatched concurrently. Addons that are uninstalled are removed from the
+     * registry even if others fail.
+     * @param deadline maximum duration to wait for each uninstallation
+     * @throws IOException if any uninstallation fails; each failure is attached as a
+     * suppressed exception
+     */
+    public void resetAddons(Duration deadline) throws IOException {
+        List<InstalledAddon> addons = getInstalledAddons();
+        List<CompletableFuture<Void>> uninstallations = addons.stream()
+                .map(addon -> uninstallAddonAsync(addon.toUninstallRequest(), deadline))
+                .collect(Collectors.toList());
+        List<Throwable> failures = new ArrayList<>();
+        for (CompletableFuture<Void> uninstallation : uninstallations) {
+            try {
+                uninstallation.join();
+            } catch (CompletionException | CancellationException e) {
+                failures.add(MoreObjects.firstNonNull(unwrap(e), e));
+            }
+        }
+        if (!failures.isEmpty()) {
+            IOException exception = new IOException(String.format("failed to uninstall %d of %d addons", failures.size(), addons.size()));
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private InstalledAddon registerInstalled(Response response, Map<String, Object> params) throws IOException {
+        Object value = response.getValue();
+        if (!(value instanceof String)) {
+            throw new IOException("expected addon id in response value, but was " + value);
+        }
+        InstalledAddon addon = InstalledAddon.fromInstallation((String) value, params);
+        installed.put(addon.getId(), addon);
+        return addon;
+    }
+
+    @Nullable
+    private static Throwable unwrap(@Nullable Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Command command, Duration deadline, Function<Response, T> successHandler) {
+        CompletableFuture<Response> responseFuture = commandExecutor.executeAsync(command, deadline);
+        CompletableFuture<T> result = responseFuture.thenApply(response -> {
+            if (!isSuccess(response)) {
+                throw new CompletionException(new NonSuccessResponseException(response));
+            }
+            return successHandler.apply(response);
+        });
+        // cancellation of the dependent future must abort the HTTP call
+        result.whenComplete((ignore, error) -> {
+            if (result.isCancelled()) {
+                responseFuture.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public void addCommandListener(CommandListener listener) {
+        commandExecutor.addCommandListener(listener);
+    }
+
+    public void removeCommandListener(CommandListener listener) {
+        commandExecutor.removeCommandListener(listener);
+    }
+
+    /**
+     * Releases the HTTP client used to send addon commands.
+     * @throws IOException if releasing the client fails
+     */
+    @Override
+    public void close() throws IOException {
+        commandExecutor.close();
     }
 
     private boolean isSuccess(Response response) {
@@ -25,6 +25,14 @@ public class AddonUninstallRequest {
         return new AddonUninstallRequest(id);
     }
 
+    /**
+     * Gets the id of the addon to be uninstalled.
+     * @return the addon id
+     */
+    public String getId() {
+        return id;
+    }
+
     /**
      * Populates a query parameters map as required for this addon uninstall request.
      * @param params the query parameters map
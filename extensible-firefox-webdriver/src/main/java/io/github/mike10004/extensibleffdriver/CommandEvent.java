@@ -0,0 +1,140 @@
+package io.github.mike10004.extensibleffdriver;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Class that represents the completion of an addon command. Durations
+ * of phases that were not reached are zero.
+ */
+public final class CommandEvent {
+
+    /**
+     * Enumeration of command outcomes.
+     */
+    public enum Outcome {
+
+        /**
+         * The driver service responded with success.
+         */
+        SUCCESS,
+
+        /**
+         * The driver service responded with an error.
+         */
+        ERROR_RESPONSE,
+
+        /**
+         * No response was received or it could not be decoded. This includes
+         * I/O errors, timeouts, and cancellation.
+         */
+        FAILURE
+    }
+
+    private final String commandName;
+    private final String sessionId;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final Duration encodeDuration;
+    private final Duration httpDuration;
+    private final Duration decodeDuration;
+    private final Outcome outcome;
+    @Nullable
+    private final Throwable failure;
+
+    CommandEvent(String commandName, String sessionId, long requestBytes, long responseBytes, Duration encodeDuration, Duration httpDuration, Duration decodeDuration, Outcome outcome, @Nullable Throwable failure) {
+        this.commandName = Objects.requireNonNull(commandName);
+        this.sessionId = Objects.requireNonNull(sessionId);
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.encodeDuration = Objects.requireNonNull(encodeDuration);
+        this.httpDuration = Objects.requireNonNull(httpDuration);
+        this.decodeDuration = Objects.requireNonNull(decodeDuration);
+        this.outcome = Objects.requireNonNull(outcome);
+        this.failure = failure;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the length of the request body.
+     * @return the length, or -1 if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Gets the length of the response body.
+     * @return the length, or -1 if no response was received
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Gets the time spent encoding the command as an HTTP request. This does not
+     * include encoding of streamed addon payloads, which happens as the request
+     * body is written.
+     * @return the encoding duration
+     */
+    public Duration getEncodeDuration() {
+        return encodeDuration;
+    }
+
+    /**
+     * Gets the time from sending the request until the response was received.
+     * @return the HTTP duration
+     */
+    public Duration getHttpDuration() {
+        return httpDuration;
+    }
+
+    /**
+     * Gets the time spent decoding the HTTP response.
+     * @return the decoding duration
+     */
+    public Duration getDecodeDuration() {
+        return decodeDuration;
+    }
+
+    /**
+     * Gets the total of the encode, HTTP, and decode durations.
+     * @return the total duration
+     */
+    public Duration getTotalDuration() {
+        return encodeDuration.plus(httpDuration).plus(decodeDuration);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Gets the exception that caused a failure.
+     * @return the exception, or null unless the outcome is {@link Outcome#FAILURE}
+     */
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandEvent{" +
+                "commandName='" + commandName + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", total=" + getTotalDuration() +
+                ", outcome=" + outcome +
+                '}';
+    }
+}
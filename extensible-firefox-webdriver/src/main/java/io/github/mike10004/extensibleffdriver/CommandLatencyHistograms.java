@@ -0,0 +1,112 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command listener that keeps in-memory latency histograms for each command.
+ * Values may be read at any time and exported to a metrics system.
+ */
+public class CommandLatencyHistograms implements CommandListener {
+
+    private final ConcurrentMap<String, CommandStats> statsByCommand;
+
+    public CommandLatencyHistograms() {
+        statsByCommand = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void commandCompleted(CommandEvent event) {
+        CommandStats stats = statsByCommand.computeIfAbsent(event.getCommandName(), name -> new CommandStats());
+        stats.totalLatency.record(event.getTotalDuration());
+        stats.httpLatency.record(event.getHttpDuration());
+        stats.outcomeCounts[event.getOutcome().ordinal()].increment();
+        if (event.getRequestBytes() > 0) {
+            stats.requestBytes.add(event.getRequestBytes());
+        }
+        if (event.getResponseBytes() > 0) {
+            stats.responseBytes.add(event.getResponseBytes());
+        }
+    }
+
+    /**
+     * Gets the names of the commands for which events have been received.
+     * @return the command names
+     */
+    public ImmutableSet<String> getCommandNames() {
+        return ImmutableSet.copyOf(statsByCommand.keySet());
+    }
+
+    /**
+     * Gets the statistics for a command.
+     * @param commandName the command name
+     * @return the statistics; empty if no events have been received for the command
+     */
+    public CommandStats getStats(String commandName) {
+        CommandStats stats = statsByCommand.get(commandName);
+        return stats == null ? new CommandStats() : stats;
+    }
+
+    /**
+     * Class that represents the statistics for a single command.
+     */
+    public static final class CommandStats {
+
+        private final LatencyHistogram totalLatency = new LatencyHistogram();
+        private final LatencyHistogram httpLatency = new LatencyHistogram();
+        private final LongAdder[] outcomeCounts;
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+
+        private CommandStats() {
+            outcomeCounts = new LongAdder[CommandEvent.Outcome.values().length];
+            for (int i = 0; i < outcomeCounts.length; i++) {
+                outcomeCounts[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Gets the histogram of total latency, from encoding to decoding.
+         * @return the histogram
+         */
+        public LatencyHistogram getTotalLatency() {
+            return totalLatency;
+        }
+
+        /**
+         * Gets the histogram of HTTP round trip latency.
+         * @return the histogram
+         */
+        public LatencyHistogram getHttpLatency() {
+            return httpLatency;
+        }
+
+        public long getOutcomeCount(CommandEvent.Outcome outcome) {
+            return outcomeCounts[outcome.ordinal()].sum();
+        }
+
+        /**
+         * Gets the total length of request bodies whose length was known.
+         * @return the total request bytes
+         */
+        public long getTotalRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        public long getTotalResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CommandStats{" +
+                    "totalLatency=" + totalLatency +
+                    ", requestBytes=" + requestBytes +
+                    ", responseBytes=" + responseBytes +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.mike10004.extensibleffdriver;
+
+/**
+ * Interface of a service that is notified when an addon command completes.
+ * Listeners are invoked on the thread that completes the command, so
+ * implementations should return quickly. Exceptions thrown by a listener
+ * are ignored.
+ * @see ExtensibleFirefoxDriver#addCommandListener(CommandListener)
+ */
+public interface CommandListener {
+
+    /**
+     * Invoked when a command completes, successfully or not.
+     * @param event the event
+     */
+    void commandCompleted(CommandEvent event);
+
+}
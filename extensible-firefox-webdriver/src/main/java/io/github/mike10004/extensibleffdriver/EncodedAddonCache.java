@@ -0,0 +1,253 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Cache of base-64-encoded addon zips, keyed by a hash of the zip content.
+ * Installation requests created by this cache carry the encoded bytes, so
+ * installing the same addon in many sessions reads and encodes the zip once.
+ *
+ * <p>Files are identified by absolute pathname, size, and modification time;
+ * if any of those change, the file is read again. A file that is modified
+ * without a change in size or modification time (for example, within the
+ * resolution of the filesystem timestamp) is not detected. Encodings are
+ * evicted when their total size exceeds the configured maximum.
+ */
+public class EncodedAddonCache {
+
+    /**
+     * Default maximum total size of encodings retained by the cache.
+     */
+    public static final long DEFAULT_MAXIMUM_ENCODED_BYTES = 64 * 1024 * 1024;
+
+    private static final int MAXIMUM_FILE_KEYS = 1024;
+
+    private final Cache<FileKey, HashCode> contentHashes;
+    private final Cache<HashCode, byte[]> encodings;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+
+    /**
+     * Constructs an instance with the default maximum size.
+     */
+    public EncodedAddonCache() {
+        this(DEFAULT_MAXIMUM_ENCODED_BYTES);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param maximumEncodedBytes maximum total size of encodings retained by the cache
+     */
+    public EncodedAddonCache(long maximumEncodedBytes) {
+        checkArgument(maximumEncodedBytes >= 0, "maximum size must be nonnegative");
+        contentHashes = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_FILE_KEYS)
+                .build();
+        // entries are few and large, and the weight limit is divided among segments,
+        // so a single segment keeps the limit meaningful
+        encodings = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maximumEncodedBytes)
+                .<HashCode, byte[]>weigher((hash, base64) -> base64.length)
+                .build();
+        hitCount = new LongAdder();
+        missCount = new LongAdder();
+    }
+
+    private static final Supplier<EncodedAddonCache> shared = Suppliers.memoize(EncodedAddonCache::new);
+
+    /**
+     * Gets the process-wide instance.
+     * @return the shared cache
+     */
+    public static EncodedAddonCache getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Creates a request to install an addon from a zip file. If the file has not
+     * changed since it was last encoded, and the encoding has not been evicted,
+     * the file is not read.
+     * @param zipPath pathname of the addon zip
+     * @param persistence session persistence of the addon
+     * @return the request instance
+     * @throws IOException if the file cannot be read
+     */
+    public AddonInstallRequest fromPath(Path zipPath, AddonPersistence persistence) throws IOException {
+        Objects.requireNonNull(zipPath, "zip path");
+        Objects.requireNonNull(persistence, "persistence");
+        Encoding encoding = encodeFile(zipPath);
+        return toRequest(encoding.base64, encoding.sha256, persistence);
+    }
+
+    /**
+     * Gets the base-64 encoding of a file, such as a Chrome extension that is
+     * embedded in the capabilities of a new session request. If the file has not
+     * changed since it was last encoded, and the encoding has not been evicted,
+     * the file is not read.
+     * @param path pathname of the file
+     * @return the encoded file content
+     * @throws IOException if the file cannot be read
+     */
+    public String encodeToString(Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        return new String(encodeFile(path).base64, US_ASCII);
+    }
+
+    private Encoding encodeFile(Path path) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(absolutePath, BasicFileAttributes.class);
+        FileKey fileKey = new FileKey(absolutePath, attributes.size(), attributes.lastModifiedTime());
+        HashCode sha256 = contentHashes.getIfPresent(fileKey);
+        if (sha256 != null) {
+            byte[] base64 = encodings.getIfPresent(sha256);
+            if (base64 != null) {
+                hitCount.increment();
+                return new Encoding(base64, sha256);
+            }
+        }
+        byte[] bytes = Files.readAllBytes(absolutePath);
+        sha256 = Hashing.sha256().hashBytes(bytes);
+        contentHashes.put(fileKey, sha256);
+        return new Encoding(encode(sha256, bytes), sha256);
+    }
+
+    /**
+     * Creates a request to install an addon from a source of zip bytes. The bytes
+     * are always read to compute the content hash, but they are encoded only if the
+     * encoding is not cached.
+     * @param zipBytes the zip bytes
+     * @param persistence session persistence of the addon
+     * @return the request instance
+     * @throws IOException if the bytes cannot be read
+     */
+    public AddonInstallRequest fromByteSource(ByteSource zipBytes, AddonPersistence persistence) throws IOException {
+        Objects.requireNonNull(zipBytes, "zip bytes");
+        Objects.requireNonNull(persistence, "persistence");
+        byte[] bytes = zipBytes.read();
+        HashCode sha256 = Hashing.sha256().hashBytes(bytes);
+        return toRequest(encode(sha256, bytes), sha256, persistence);
+    }
+
+    private byte[] encode(HashCode sha256, byte[] zipBytes) {
+        byte[] base64 = encodings.getIfPresent(sha256);
+        if (base64 != null) {
+            hitCount.increment();
+            return base64;
+        }
+        missCount.increment();
+        base64 = Base64.getEncoder().encode(zipBytes);
+        encodings.put(sha256, base64);
+        return base64;
+    }
+
+    private static AddonInstallRequest toRequest(byte[] base64, HashCode sha256, AddonPersistence persistence) {
+        AddonPayload payload = AddonPayload.preEncoded(base64, sha256);
+        return new AddonInstallRequest() {
+            @Override
+            public void toParameters(Map<String, Object> parameters) {
+                parameters.put("addon", payload);
+                parameters.put("temporary", persistence == AddonPersistence.TEMPORARY);
+            }
+        };
+    }
+
+    /**
+     * Gets the number of installation requests and file encodings served without encoding the content.
+     * @return count of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of installation requests and file encodings for which the content had to be encoded.
+     * @return count of cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of encodings currently retained.
+     * @return count of encodings
+     */
+    public long size() {
+        return encodings.size();
+    }
+
+    /**
+     * Discards all cached encodings and file hashes.
+     */
+    public void invalidateAll() {
+        contentHashes.invalidateAll();
+        encodings.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedAddonCache{" +
+                "size=" + encodings.size() +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                '}';
+    }
+
+    private static final class Encoding {
+
+        public final byte[] base64;
+        public final HashCode sha256;
+
+        Encoding(byte[] base64, HashCode sha256) {
+            this.base64 = base64;
+            this.sha256 = sha256;
+        }
+    }
+
+    private static final class FileKey {
+
+        private final Path path;
+        private final long size;
+        private final FileTime lastModified;
+
+        FileKey(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileKey fileKey = (FileKey) o;
+            return size == fileKey.size &&
+                    path.equals(fileKey.path) &&
+                    lastModified.equals(fileKey.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
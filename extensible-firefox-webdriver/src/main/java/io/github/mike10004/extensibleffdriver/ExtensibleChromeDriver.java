@@ -0,0 +1,106 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.extensibleffdriver.LimitedCommandExecutor.Commands;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A Chrome webdriver implementation that supports changing the user agent of a
+ * running session and waiting for an extension to become active. The user
+ * agent is changed with {@link #setUserAgentOverride(String)}, which sends the
+ * DevTools method {@code Network.setUserAgentOverride} through chromedriver's
+ * {@code goog/cdp/execute} endpoint. The override applies to the current tab.
+ *
+ * <p>Unlike {@link ExtensibleFirefoxDriver}, this driver cannot install or
+ * uninstall extensions in a running session. Chrome exposes the DevTools
+ * {@code Extensions} domain only to clients connected over a pipe, and
+ * chromedriver forwards DevTools commands over its port connection. Extensions
+ * must be loaded at launch, for example with
+ * {@link ChromeOptions#addExtensions(java.io.File...)}.
+ */
+public class ExtensibleChromeDriver extends ChromeDriver implements UserAgentOverridable {
+
+    static final String CDP_SET_USER_AGENT_OVERRIDE = "Network.setUserAgentOverride";
+
+    private final LimitedCommandExecutor commandExecutor;
+
+    /**
+     * Constructs a driver instance using the given driver service and capabilities.
+     * @param service the driver service
+     * @param options the capabilities
+     */
+    public ExtensibleChromeDriver(ChromeDriverService service, ChromeOptions options) {
+        this(service, options, PooledHttpClientFactory.getShared());
+    }
+
+    /**
+     * Constructs a driver instance using the given driver service, capabilities,
+     * and HTTP client factory. The factory is used to create the client that sends
+     * DevTools commands; the client is closed when the driver quits, but the factory
+     * is not.
+     * @param service the driver service
+     * @param options the capabilities
+     * @param httpClientFactory the HTTP client factory
+     */
+    public ExtensibleChromeDriver(ChromeDriverService service, ChromeOptions options, HttpClient.Factory httpClientFactory) {
+        super(service, options);
+        this.commandExecutor = LimitedCommandExecutor.forService(service, httpClientFactory, Commands.getChromeList());
+    }
+
+    /**
+     * Quits this driver and releases the HTTP client used for DevTools commands.
+     * If the driver fails to quit, a failure to release the client is added to
+     * the exception as suppressed.
+     */
+    @Override
+    public void quit() {
+        try {
+            super.quit();
+        } catch (RuntimeException e) {
+            try {
+                commandExecutor.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        try {
+            commandExecutor.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets or clears the user agent override of the current tab.
+     * @param userAgent the user agent string, or null to restore the browser default
+     * @throws IOException on I/O error or if the browser rejects the change
+     */
+    @Override
+    public void setUserAgentOverride(@Nullable String userAgent) throws IOException {
+        Map<String, Object> params = ImmutableMap.of("userAgent", Strings.nullToEmpty(userAgent));
+        commandExecutor.executeForValue(new Command(getSessionId(), Commands.NAME_EXECUTE_CDP_COMMAND, ImmutableMap.of("cmd", CDP_SET_USER_AGENT_OVERRIDE, "params", params)));
+    }
+
+    /**
+     * Waits for an extension to signal that it is active in the current page.
+     * @param id the extension id
+     * @param timeout maximum duration to wait
+     * @return true if the extension signaled readiness before the timeout
+     * @see ExtensibleFirefoxDriver#awaitAddonReady(String, Duration)
+     */
+    public boolean awaitAddonReady(String id, Duration timeout) {
+        return AddonReadiness.await(this, id, timeout);
+    }
+}
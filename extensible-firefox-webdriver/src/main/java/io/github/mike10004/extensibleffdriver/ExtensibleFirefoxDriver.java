@@ -4,12 +4,21 @@ import com.google.common.base.Suppliers;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.http.HttpClient;
 
+import javax.annotation.Nullable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Supplier;
 
 /**
@@ -18,10 +27,34 @@ import java.util.function.Supplier;
  * {@link #installAddon(AddonInstallRequest)} and {@link #uninstallAddon(AddonUninstallRequest)}.
  * A special command executor is created to handle the install/uninstall, and it is
  * less tolerant to strange inputs, so this may only work in limited cases.
+ *
+ * <p>The addon command executor uses an HTTP client from a
+ * {@link PooledHttpClientFactory}, by default the {@link PooledHttpClientFactory#getShared() shared}
+ * instance, so that drivers do not each create a connection pool. The client is
+ * released when the driver {@link #quit() quits}.
+ *
+ * <p>A running session may also be reconfigured without a restart. The driver
+ * can {@link #setContext(FirefoxContext) switch the command context},
+ * {@link #executePrivilegedScript(String, Object...) execute privileged script},
+ * and {@link #getPreference(String) get} and {@link #setPreferences(Map) set}
+ * preferences. The user agent may be changed with
+ * {@link #setUserAgentOverride(String)}, which sets the
+ * {@value #PREF_USER_AGENT_OVERRIDE} preference.
  */
-public class ExtensibleFirefoxDriver extends FirefoxDriver {
+public class ExtensibleFirefoxDriver extends FirefoxDriver implements UserAgentOverridable {
+
+    /**
+     * Default deadline for each command in a batch of addon installations or uninstallations.
+     */
+    public static final Duration DEFAULT_BATCH_DEADLINE = Duration.ofMinutes(2);
+
+    /**
+     * Name of the preference that overrides the user agent.
+     */
+    public static final String PREF_USER_AGENT_OVERRIDE = "general.useragent.override";
 
     private final AddonSupport addonSupport;
+    private final MozCommandSupport mozCommandSupport;
 
     /**
      * Constructs a driver instance using the given driver service and capabilities.
@@ -33,17 +66,140 @@ public class ExtensibleFirefoxDriver extends FirefoxDriver {
      * @param options the capabilities
      */
     public ExtensibleFirefoxDriver(GeckoDriverService service, FirefoxOptions options) {
+        this(service, options, PooledHttpClientFactory.getShared());
+    }
+
+    /**
+     * Constructs a driver instance using the given driver service, capabilities,
+     * and HTTP client factory. The factory is used to create the client that sends
+     * addon commands; the client is closed when the driver quits, but the factory
+     * is not.
+     * @param service the driver service
+     * @param options the capabilities
+     * @param addonHttpClientFactory the HTTP client factory
+     */
+    public ExtensibleFirefoxDriver(GeckoDriverService service, FirefoxOptions options, HttpClient.Factory addonHttpClientFactory) {
         super(service, options);
-        this.addonSupport = new AddonSupport(this::getSessionId, service);
+        LimitedCommandExecutor commandExecutor = LimitedCommandExecutor.forService(service, addonHttpClientFactory);
+        this.addonSupport = new AddonSupport(this::getSessionId, commandExecutor);
+        this.mozCommandSupport = new MozCommandSupport(this::getSessionId, commandExecutor, this);
+    }
+
+    /**
+     * Quits this driver and releases the HTTP client used for addon commands.
+     */
+    @Override
+    public void quit() {
+        try {
+            super.quit();
+        } finally {
+            try {
+                addonSupport.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     /**
-     * Installs an addon.
+     * Sets or clears the user agent override preference.
+     * @param userAgent the user agent string, or null to clear the preference
+     * @throws IOException on I/O error or if the browser rejects the change
+     */
+    @Override
+    public void setUserAgentOverride(@Nullable String userAgent) throws IOException {
+        setPreference(PREF_USER_AGENT_OVERRIDE, userAgent);
+    }
+
+    /**
+     * Gets the context in which commands are executed.
+     * @return the context
+     * @throws IOException on I/O error
+     */
+    public FirefoxContext getContext() throws IOException {
+        return mozCommandSupport.getContext();
+    }
+
+    /**
+     * Sets the context in which subsequent commands, including scripts executed
+     * with {@link #executeScript(String, Object...)}, are executed.
+     * @param context the context
+     * @throws IOException on I/O error
+     */
+    public void setContext(FirefoxContext context) throws IOException {
+        mozCommandSupport.setContext(context);
+    }
+
+    /**
+     * Executes a script in the chrome context and then restores the previous context.
+     * The script has browser privileges, so it can use the {@code Services} object, for example.
+     * @param script the script
+     * @param args the script arguments
+     * @return the script return value
+     * @throws IOException on I/O error
+     */
+    @Nullable
+    public Object executePrivilegedScript(String script, Object... args) throws IOException {
+        return mozCommandSupport.executePrivilegedScript(script, args);
+    }
+
+    /**
+     * Gets the value of a preference.
+     * @param name the preference name
+     * @return the value, which is a string, long, or boolean, or null if the preference has no value
+     * @throws IOException on I/O error
+     */
+    @Nullable
+    public Object getPreference(String name) throws IOException {
+        return mozCommandSupport.getPreference(name);
+    }
+
+    /**
+     * Sets or clears a preference.
+     * @param name the preference name
+     * @param value the value, which must be a string, integer, or boolean, or null
+     * to clear the user value of the preference
+     * @throws IOException on I/O error
+     */
+    public void setPreference(String name, @Nullable Object value) throws IOException {
+        setPreferences(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Sets or clears multiple preferences with one privileged script execution.
+     * @param preferences map of preference name to value
+     * @throws IOException on I/O error
+     * @see #setPreference(String, Object)
+     */
+    public void setPreferences(Map<String, ?> preferences) throws IOException {
+        mozCommandSupport.setPreferences(preferences);
+    }
+
+    /**
+     * Waits for an addon to signal that it is active in the current page. The addon
+     * signals readiness from a content script by adding its id to the space-separated
+     * list in the {@code data-addon-ready} attribute of the document element. The wait
+     * is a single asynchronous script that observes changes to that attribute, so it
+     * completes as soon as the addon signals. Because readiness is observed in the
+     * current page, call this method after navigating. The wait also ends if the
+     * session's script timeout elapses first.
+     * @param id the addon id
+     * @param timeout maximum duration to wait
+     * @return true if the addon signaled readiness before the timeout
+     */
+    public boolean awaitAddonReady(String id, Duration timeout) {
+        return AddonReadiness.await(this, id, timeout);
+    }
+
+    /**
+     * Installs an addon. The addon is added to this driver's registry of
+     * {@link #getInstalledAddons() installed addons}.
      * @param request installation request parameters
+     * @return the installed addon
      * @throws IOException on I/O error
      */
-    public void installAddon(AddonInstallRequest request) throws IOException {
-        addonSupport.installAddon(request);
+    public InstalledAddon installAddon(AddonInstallRequest request) throws IOException {
+        return addonSupport.installAddon(request);
     }
 
     /**
@@ -55,6 +211,121 @@ public class ExtensibleFirefoxDriver extends FirefoxDriver {
         addonSupport.uninstallAddon(request);
     }
 
+    /**
+     * Installs an addon asynchronously. The returned future is completed
+     * exceptionally with a {@link java.util.concurrent.TimeoutException} if the
+     * installation does not complete by the deadline. Cancelling the future, or
+     * reaching the deadline, aborts the request to the driver service.
+     * @param request installation request parameters
+     * @param deadline maximum duration to wait for the installation
+     * @return a future that completes with the installed addon
+     */
+    public CompletableFuture<InstalledAddon> installAddonAsync(AddonInstallRequest request, Duration deadline) {
+        return addonSupport.installAddonAsync(request, deadline);
+    }
+
+    /**
+     * Uninstalls an addon asynchronously. Cancellation and deadline behavior is
+     * the same as for {@link #installAddonAsync(AddonInstallRequest, Duration)}.
+     * @param request uninstallation request parameters
+     * @param deadline maximum duration to wait for the uninstallation
+     * @return a future that completes when the addon is uninstalled
+     */
+    public CompletableFuture<Void> uninstallAddonAsync(AddonUninstallRequest request, Duration deadline) {
+        return addonSupport.uninstallAddonAsync(request, deadline);
+    }
+
+    /**
+     * Installs multiple addons, dispatching the installation requests concurrently
+     * and waiting for all of them to finish. Failure to install one addon does not
+     * prevent installation of the others; check the report for failures.
+     * @param requests installation requests
+     * @return a report of the outcomes, in request order
+     * @throws InterruptedException if interrupted while waiting, in which case the
+     * pending installations are cancelled
+     */
+    public AddonInstallReport installAddons(List<AddonInstallRequest> requests) throws InterruptedException {
+        return installAddons(requests, DEFAULT_BATCH_DEADLINE);
+    }
+
+    /**
+     * Installs multiple addons, dispatching the installation requests concurrently
+     * and waiting for all of them to finish.
+     * @param requests installation requests
+     * @param deadline maximum duration to wait for each installation
+     * @return a report of the outcomes, in request order
+     * @throws InterruptedException if interrupted while waiting, in which case the
+     * pending installations are cancelled
+     * @see #installAddons(List)
+     */
+    public AddonInstallReport installAddons(List<AddonInstallRequest> requests, Duration deadline) throws InterruptedException {
+        CompletableFuture<AddonInstallReport> report = installAddonsAsync(requests, deadline);
+        try {
+            return report.get();
+        } catch (InterruptedException e) {
+            report.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("batch report should always complete normally", e.getCause());
+        }
+    }
+
+    /**
+     * Installs multiple addons asynchronously. Cancelling the returned future
+     * cancels the pending installations.
+     * @param requests installation requests
+     * @param deadline maximum duration to wait for each installation
+     * @return a future report of the outcomes, in request order
+     */
+    public CompletableFuture<AddonInstallReport> installAddonsAsync(List<AddonInstallRequest> requests, Duration deadline) {
+        return addonSupport.installAddonsAsync(requests, deadline);
+    }
+
+    /**
+     * Gets the addons installed by this driver that have not been uninstalled.
+     * @return the installed addons, in installation order
+     */
+    public List<InstalledAddon> getInstalledAddons() {
+        return addonSupport.getInstalledAddons();
+    }
+
+    /**
+     * Uninstalls all addons installed by this driver. This allows a browser session
+     * to be reused without restarting the browser.
+     * @throws IOException if any addon could not be uninstalled
+     */
+    public void resetAddons() throws IOException {
+        resetAddons(DEFAULT_BATCH_DEADLINE);
+    }
+
+    /**
+     * Uninstalls all addons installed by this driver.
+     * @param deadline maximum duration to wait for each uninstallation
+     * @throws IOException if any addon could not be uninstalled
+     * @see #resetAddons()
+     */
+    public void resetAddons(Duration deadline) throws IOException {
+        addonSupport.resetAddons(deadline);
+    }
+
+    /**
+     * Adds a listener to be notified when addon commands complete. The listener
+     * may be used to gather latency and payload size metrics; see
+     * {@link CommandLatencyHistograms} for an in-memory implementation.
+     * @param listener the listener
+     */
+    public void addCommandListener(CommandListener listener) {
+        addonSupport.addCommandListener(listener);
+    }
+
+    /**
+     * Removes a command listener.
+     * @param listener the listener
+     */
+    public void removeCommandListener(CommandListener listener) {
+        addonSupport.removeCommandListener(listener);
+    }
+
     public static ArtifactInfo getArtifactInfo() {
         return artifactInfo.get();
     }
@@ -0,0 +1,51 @@
+package io.github.mike10004.extensibleffdriver;
+
+import java.util.Objects;
+
+/**
+ * Enumeration of Firefox command contexts. Commands executed in the chrome
+ * context, such as scripts, run with browser privileges instead of in the
+ * content of the current page.
+ */
+public enum FirefoxContext {
+
+    /**
+     * Context of the current page. This is the default.
+     */
+    CONTENT("content"),
+
+    /**
+     * Context of the browser itself.
+     */
+    CHROME("chrome");
+
+    private final String name;
+
+    FirefoxContext(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of this context as used in the protocol.
+     * @return the context name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the context with the given protocol name.
+     * @param name the context name
+     * @return the context
+     * @throws IllegalArgumentException if the name is not the name of a context
+     */
+    public static FirefoxContext fromName(String name) {
+        Objects.requireNonNull(name, "name");
+        for (FirefoxContext context : values()) {
+            if (context.name.equals(name)) {
+                return context;
+            }
+        }
+        throw new IllegalArgumentException("unrecognized context: " + name);
+    }
+}
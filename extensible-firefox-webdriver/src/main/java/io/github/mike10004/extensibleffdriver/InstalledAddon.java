@@ -0,0 +1,159 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Class that represents an addon that has been installed in a browser session.
+ */
+public final class InstalledAddon {
+
+    private final String id;
+    private final AddonPersistence persistence;
+    private final HashCode sourceHash;
+
+    InstalledAddon(String id, AddonPersistence persistence, HashCode sourceHash) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.persistence = Objects.requireNonNull(persistence, "persistence");
+        this.sourceHash = Objects.requireNonNull(sourceHash, "source hash");
+    }
+
+    /**
+     * Constructs an instance from the id assigned by the driver service and
+     * the parameters of the installation request. The hash of the addon source
+     * is computed now, unless the payload already knows it, so that the instance
+     * does not keep the payload reachable.
+     * @param id the addon id
+     * @param installParameters parameters populated by {@link AddonInstallRequest#toParameters(Map)}
+     * @return a new instance
+     * @throws IOException if the addon source must be read and reading it fails
+     */
+    static InstalledAddon fromInstallation(String id, Map<String, Object> installParameters) throws IOException {
+        AddonPersistence persistence = Boolean.TRUE.equals(installParameters.get("temporary")) ? AddonPersistence.TEMPORARY : AddonPersistence.PERMANENT;
+        Object addon = installParameters.get("addon");
+        if (addon instanceof AddonPayload) {
+            HashCode knownHash = ((AddonPayload) addon).sha256IfKnown();
+            if (knownHash != null) {
+                return new InstalledAddon(id, persistence, knownHash);
+            }
+        }
+        HashCode sourceHash = toByteSource(installParameters).hash(Hashing.sha256());
+        return new InstalledAddon(id, persistence, sourceHash);
+    }
+
+    private static ByteSource toByteSource(Map<String, Object> installParameters) {
+        Object addon = installParameters.get("addon");
+        if (addon instanceof AddonPayload) {
+            return ((AddonPayload) addon).getZipBytes();
+        }
+        if (addon instanceof String) {
+            return BaseEncoding.base64().decodingSource(CharSource.wrap((String) addon));
+        }
+        Object path = installParameters.get("path");
+        if (path instanceof String) {
+            File file = new File((String) path);
+            if (file.isDirectory()) {
+                return directoryByteSource(file.toPath());
+            }
+            return Files.asByteSource(file);
+        }
+        throw new IllegalArgumentException("parameters do not specify an addon source: " + installParameters.keySet());
+    }
+
+    /**
+     * Creates a byte source that supplies the relative pathname and content
+     * of each file in a directory tree, in pathname order. The directory is
+     * listed when the source is opened.
+     */
+    private static ByteSource directoryByteSource(Path directory) {
+        return new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                List<Path> files = new ArrayList<>();
+                for (Path file : MoreFiles.fileTraverser().depthFirstPreOrder(directory)) {
+                    if (java.nio.file.Files.isRegularFile(file)) {
+                        files.add(file);
+                    }
+                }
+                Collections.sort(files);
+                List<ByteSource> parts = new ArrayList<>(files.size() * 2);
+                for (Path file : files) {
+                    String relativePath = directory.relativize(file).toString().replace(File.separatorChar, '/');
+                    parts.add(ByteSource.wrap((relativePath + '\0').getBytes(UTF_8)));
+                    parts.add(MoreFiles.asByteSource(file));
+                }
+                return ByteSource.concat(parts).openStream();
+            }
+        };
+    }
+
+    /**
+     * Gets the addon id assigned by the driver service. This is the value of the
+     * manifest {@code applications.gecko.id} field, if the manifest has one.
+     * @return the addon id
+     */
+    public String getId() {
+        return id;
+    }
+
+    public AddonPersistence getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Gets the hex-encoded SHA-256 hash of the addon zip bytes. The hash is
+     * computed when the addon is installed. If the addon was installed from a
+     * directory, the hash covers the relative pathnames and contents of the
+     * files in the directory.
+     * @return the source hash
+     */
+    public String getSourceHash() {
+        return sourceHash.toString();
+    }
+
+    /**
+     * Creates a request to uninstall this addon.
+     * @return an uninstallation request
+     */
+    public AddonUninstallRequest toUninstallRequest() {
+        return AddonUninstallRequest.fromId(id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InstalledAddon that = (InstalledAddon) o;
+        return id.equals(that.id) && persistence == that.persistence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, persistence);
+    }
+
+    @Override
+    public String toString() {
+        return "InstalledAddon{" +
+                "id='" + id + '\'' +
+                ", persistence=" + persistence +
+                '}';
+    }
+}
@@ -2,6 +2,9 @@ package io.github.mike10004.extensibleffdriver;
 
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.openqa.selenium.UnsupportedCommandException;
 import org.openqa.selenium.remote.Command;
 import org.openqa.selenium.remote.CommandCodec;
@@ -16,32 +19,120 @@ import org.openqa.selenium.remote.http.W3CHttpCommandCodec;
 import org.openqa.selenium.remote.http.W3CHttpResponseCodec;
 import org.openqa.selenium.remote.service.DriverService;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
- * Command executor that only handles addon install/uninstall commands and
- * requires the W3C dialect to be used.
+ * Command executor that only handles a registry of browser-specific commands,
+ * such as addon install/uninstall, and requires the W3C dialect to be used.
+ * By default, the registry contains the Mozilla-specific commands listed in
+ * {@link Commands}; an executor may be constructed with a different registry.
+ * Commands that are not in the registry are rejected without being sent.
  */
-class LimitedCommandExecutor {
+class LimitedCommandExecutor implements Closeable {
 
-    private final Supplier<HttpClient> clientProvider;
+    private final Supplier<? extends HttpClient> clientProvider;
+    private final Object clientLock = new Object();
+    private HttpClient client;
+    private boolean closed;
     private CommandCodec<HttpRequest> commandCodec;
     private ResponseCodec<HttpResponse> responseCodec;
+    private final List<CommandListener> listeners = new CopyOnWriteArrayList<>();
+    private final ImmutableMap<String, CommandSpec> registry;
 
     public LimitedCommandExecutor(Supplier<? extends HttpClient> clientProvider) {
-        this.clientProvider = Suppliers.memoize(clientProvider::get);
+        this(clientProvider, Commands.getList());
+    }
+
+    LimitedCommandExecutor(Supplier<? extends HttpClient> clientProvider, Iterable<CommandSpec> commands) {
+        this.clientProvider = Objects.requireNonNull(clientProvider);
         commandCodec = new W3CHttpCommandCodec();
         responseCodec = new W3CHttpResponseCodec();
-        Commands.getList().forEach(spec -> commandCodec.defineCommand(spec.name, spec.method, spec.url));
+        ImmutableMap.Builder<String, CommandSpec> registry = ImmutableMap.builder();
+        commands.forEach(spec -> {
+            commandCodec.defineCommand(spec.name, spec.method, spec.url);
+            registry.put(spec.name, spec);
+        });
+        this.registry = registry.build();
     }
 
     public static LimitedCommandExecutor forService(DriverService service, HttpClient.Factory httpClientFactory) {
-        return new LimitedCommandExecutor(() -> httpClientFactory.createClient(service.getUrl()));
+        return forService(service, httpClientFactory, Commands.getList());
+    }
+
+    static LimitedCommandExecutor forService(DriverService service, HttpClient.Factory httpClientFactory, Iterable<CommandSpec> commands) {
+        return new LimitedCommandExecutor(() -> httpClientFactory.createClient(service.getUrl()), commands);
+    }
+
+    /**
+     * Checks whether a command is in this executor's registry.
+     * @param commandName the command name
+     * @return true if the command is supported
+     */
+    public boolean isSupported(String commandName) {
+        return registry.containsKey(commandName);
+    }
+
+    /**
+     * Gets the names of the commands in this executor's registry.
+     * @return the command names
+     */
+    public ImmutableSet<String> getCommandNames() {
+        return registry.keySet();
+    }
+
+    private HttpClient getClient() {
+        synchronized (clientLock) {
+            if (closed) {
+                throw new IllegalUsageException("executor is closed");
+            }
+            if (client == null) {
+                client = Objects.requireNonNull(clientProvider.get(), "client provider returned null");
+            }
+            return client;
+        }
     }
 
-    private static class CommandSpec {
+    /**
+     * Closes the HTTP client used by this executor, if the client is closeable.
+     * @throws IOException if closing the client fails
+     */
+    @Override
+    public void close() throws IOException {
+        HttpClient client;
+        synchronized (clientLock) {
+            closed = true;
+            client = this.client;
+            this.client = null;
+        }
+        if (client instanceof Closeable) {
+            ((Closeable) client).close();
+        }
+    }
+
+    static class CommandSpec {
         public final String name;
         public final HttpMethod method;
         public final String url;
@@ -59,23 +150,45 @@ class LimitedCommandExecutor {
         private static final String URL_UNINSTALL_ADDON = "/session/:sessionId/moz/addon/uninstall";
         public static final String NAME_INSTALL_ADDON = "installAddon";
         public static final String NAME_UNINSTALL_ADDON = "uninstallAddon";
+        private static final String URL_CONTEXT = "/session/:sessionId/moz/context";
+        public static final String NAME_GET_CONTEXT = "getContext";
+        public static final String NAME_SET_CONTEXT = "setContext";
+        private static final String URL_EXECUTE_CDP_COMMAND = "/session/:sessionId/goog/cdp/execute";
+        public static final String NAME_EXECUTE_CDP_COMMAND = "executeCdpCommand";
         private static final CommandSpec INSTALL_ADDON = new CommandSpec(Commands.NAME_INSTALL_ADDON, HttpMethod.POST, Commands.URL_INSTALL_ADDON);
         private static final CommandSpec UNINSTALL_ADDON = new CommandSpec(Commands.NAME_UNINSTALL_ADDON, HttpMethod.POST, Commands.URL_UNINSTALL_ADDON);
-        private static final ImmutableList<CommandSpec> commands = ImmutableList.of(INSTALL_ADDON, UNINSTALL_ADDON);
-        private static final ImmutableList<String> commandNames = commands.stream().map(cmd -> cmd.name).collect(ImmutableList.toImmutableList());
+        private static final CommandSpec GET_CONTEXT = new CommandSpec(Commands.NAME_GET_CONTEXT, HttpMethod.GET, Commands.URL_CONTEXT);
+        private static final CommandSpec SET_CONTEXT = new CommandSpec(Commands.NAME_SET_CONTEXT, HttpMethod.POST, Commands.URL_CONTEXT);
+        private static final CommandSpec EXECUTE_CDP_COMMAND = new CommandSpec(Commands.NAME_EXECUTE_CDP_COMMAND, HttpMethod.POST, Commands.URL_EXECUTE_CDP_COMMAND);
+        private static final ImmutableList<CommandSpec> commands = ImmutableList.of(INSTALL_ADDON, UNINSTALL_ADDON, GET_CONTEXT, SET_CONTEXT);
+        private static final ImmutableList<CommandSpec> chromeCommands = ImmutableList.of(EXECUTE_CDP_COMMAND);
 
         private Commands() {}
 
-        public static void checkSupportedCommand(String command) {
-            Objects.requireNonNull(command, "command");
-            if (!commandNames.contains(command)) {
-                throw new IllegalUsageException("unsupported command");
-            }
-        }
-
+        /**
+         * Gets the Mozilla-specific commands. Preferences and privileged scripts
+         * do not have commands of their own; they are handled by executing a
+         * script after switching to the chrome context.
+         * @return the command specs
+         */
         public static Iterable<CommandSpec> getList() {
             return commands;
         }
+
+        /**
+         * Gets the Chrome-specific commands, which send DevTools methods.
+         * @return the command specs
+         */
+        public static Iterable<CommandSpec> getChromeList() {
+            return chromeCommands;
+        }
+    }
+
+    private void checkSupportedCommand(String command) {
+        Objects.requireNonNull(command, "command");
+        if (!registry.containsKey(command)) {
+            throw new IllegalUsageException("unsupported command: " + command);
+        }
     }
 
     private static class IllegalUsageException extends RuntimeException {
@@ -101,13 +214,243 @@ class LimitedCommandExecutor {
     // specific language governing permissions and limitations
     // under the License.
     public Response execute(Command command) throws IOException {
+        CommandRecorder recorder = new CommandRecorder(command);
+        try {
+            HttpRequest httpRequest = prepare(command);
+            HttpClient client = prepareClient(httpRequest);
+            recorder.encoded(httpRequest);
+            HttpResponse httpResponse = client.execute(httpRequest);
+            recorder.received(httpResponse);
+            Response response = decode(command, httpResponse);
+            recorder.completed(response, null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            recorder.completed(null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a command and checks that the response indicates success.
+     * @param command the command
+     * @return the response value
+     * @throws IOException on I/O error or if the response does not indicate success
+     */
+    @Nullable
+    public Object executeForValue(Command command) throws IOException {
+        Response response = execute(command);
+        if (!"success".equals(response.getState())) {
+            throw new AddonSupport.NonSuccessResponseException(response);
+        }
+        return response.getValue();
+    }
+
+    /**
+     * Executes a command asynchronously. The returned future is completed exceptionally
+     * with a {@link TimeoutException} if the response has not been received by the
+     * deadline. If the future is cancelled or times out before the response is received,
+     * the HTTP call is aborted, provided the client supports that.
+     * @param command the command
+     * @param deadline maximum duration to wait for the response
+     * @return a future response
+     * @throws IllegalArgumentException if the deadline is not positive
+     */
+    public CompletableFuture<Response> executeAsync(Command command, Duration deadline) {
+        Objects.requireNonNull(deadline, "deadline");
+        checkArgument(!deadline.isNegative() && !deadline.isZero(), "deadline must be positive: %s", deadline);
+        CommandRecorder recorder = new CommandRecorder(command);
+        HttpRequest httpRequest;
+        HttpClient client;
+        try {
+            httpRequest = prepare(command);
+            client = prepareClient(httpRequest);
+        } catch (RuntimeException e) {
+            recorder.completed(null, e);
+            throw e;
+        }
+        recorder.encoded(httpRequest);
+        CompletableFuture<HttpResponse> httpFuture;
+        if (client instanceof StreamingOkHttpClient) {
+            httpFuture = ((StreamingOkHttpClient) client).executeAsync(httpRequest);
+        } else {
+            httpFuture = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.execute(httpRequest);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+        httpFuture.whenComplete((httpResponse, error) -> {
+            if (error != null) {
+                responseFuture.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            recorder.received(httpResponse);
+            try {
+                responseFuture.complete(decode(command, httpResponse));
+            } catch (RuntimeException e) {
+                responseFuture.completeExceptionally(e);
+            }
+        });
+        ScheduledFuture<?> timeout = deadlineScheduler.get().schedule(() -> {
+            responseFuture.completeExceptionally(new TimeoutException(String.format("%s command not completed within %s", command.getName(), deadline)));
+        }, deadline.toMillis(), TimeUnit.MILLISECONDS);
+        responseFuture.whenComplete((response, error) -> {
+            recorder.completed(response, error);
+            timeout.cancel(false);
+            if (error != null) {
+                httpFuture.cancel(true);
+            }
+        });
+        return responseFuture;
+    }
+
+    private static final Supplier<ScheduledExecutorService> deadlineScheduler = Suppliers.memoize(() -> {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("addon-command-deadline-%d")
+                .build());
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    });
+
+    /**
+     * Adds a listener to be notified when commands complete.
+     * @param listener the listener
+     */
+    public void addCommandListener(CommandListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener
+     */
+    public void removeCommandListener(CommandListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Class that records the timing of the phases of a command's execution and
+     * notifies listeners when the command completes.
+     */
+    private class CommandRecorder {
+
+        private final Command command;
+        private final long start;
+        private volatile long encodedAt;
+        private volatile long receivedAt;
+        private volatile long requestBytes = -1;
+        private volatile long responseBytes = -1;
+        private final AtomicBoolean completed;
+
+        public CommandRecorder(Command command) {
+            this.command = command;
+            start = System.nanoTime();
+            completed = new AtomicBoolean(false);
+        }
+
+        public void encoded(HttpRequest httpRequest) {
+            encodedAt = System.nanoTime();
+            if (!listeners.isEmpty()) {
+                requestBytes = requestLength(httpRequest);
+            }
+        }
+
+        public void received(HttpResponse httpResponse) {
+            receivedAt = System.nanoTime();
+            if (!listeners.isEmpty()) {
+                responseBytes = responseLength(httpResponse);
+            }
+        }
+
+        public void completed(@Nullable Response response, @Nullable Throwable error) {
+            if (listeners.isEmpty() || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            long end = System.nanoTime();
+            long encoded = encodedAt == 0 ? end : encodedAt;
+            long received = receivedAt == 0 ? end : receivedAt;
+            CommandEvent.Outcome outcome;
+            if (error != null || response == null) {
+                outcome = CommandEvent.Outcome.FAILURE;
+            } else {
+                outcome = "success".equals(response.getState()) ? CommandEvent.Outcome.SUCCESS : CommandEvent.Outcome.ERROR_RESPONSE;
+            }
+            CommandEvent event = new CommandEvent(command.getName(), String.valueOf(command.getSessionId()),
+                    requestBytes, responseBytes,
+                    Duration.ofNanos(encoded - start), Duration.ofNanos(received - encoded), Duration.ofNanos(end - received),
+                    outcome, error);
+            for (CommandListener listener : listeners) {
+                try {
+                    listener.commandCompleted(event);
+                } catch (RuntimeException ignore) {
+                    // a listener must not affect command execution
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the length of a request body without reading it, because reading
+     * it would consume the content stream that the client sends.
+     */
+    private static long requestLength(HttpRequest httpRequest) {
+        StreamingContent streamingContent = StreamingContent.getAttached(httpRequest);
+        if (streamingContent != null) {
+            return streamingContent.length();
+        }
+        return parseContentLength(httpRequest.getHeader("Content-Length"));
+    }
+
+    private static long responseLength(HttpResponse httpResponse) {
+        long contentLength = parseContentLength(httpResponse.getHeader("Content-Length"));
+        if (contentLength >= 0) {
+            return contentLength;
+        }
+        // the stream wraps the buffered content, which the response codec reads anyway
+        try (InputStream content = httpResponse.getContentStream()) {
+            return content.available();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long parseContentLength(@Nullable String contentLength) {
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return -1;
+    }
+
+    private HttpRequest prepare(Command command) {
         if (command.getSessionId() == null) {
             throw new IllegalUsageException("executor is only to be used with existing session");
         }
-        Commands.checkSupportedCommand(command.getName());
-        HttpRequest httpRequest = commandCodec.encode(command);
+        checkSupportedCommand(command.getName());
+        return encode(command);
+    }
+
+    private HttpClient prepareClient(HttpRequest httpRequest) {
+        HttpClient client = getClient();
+        StreamingContent streamingContent = StreamingContent.getAttached(httpRequest);
+        if (streamingContent != null && !(client instanceof StreamingOkHttpClient)) {
+            try {
+                httpRequest.setContent(streamingContent.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return client;
+    }
+
+    private Response decode(Command command, HttpResponse httpResponse) {
         try {
-            HttpResponse httpResponse = clientProvider.get().execute(httpRequest);
             Response response = responseCodec.decode(httpResponse);
             if (response.getSessionId() == null) {
                 if (httpResponse.getTargetHost() != null) {
@@ -127,4 +470,34 @@ class LimitedCommandExecutor {
             throw e;
         }
     }
+
+    /**
+     * Encodes a command as an HTTP request. Parameter values that are
+     * {@link AddonPayload} instances are not serialized into the request content;
+     * instead, {@link StreamingContent} is attached to the request, so that
+     * the payload bytes are encoded as the request body is written.
+     * @param command the command
+     * @return the request
+     */
+    HttpRequest encode(Command command) {
+        Map<String, AddonPayload> payloads = new HashMap<>();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        command.getParameters().forEach((name, value) -> {
+            if (value instanceof AddonPayload) {
+                String token = "payload-" + UUID.randomUUID();
+                payloads.put(token, (AddonPayload) value);
+                parameters.put(name, token);
+            } else {
+                parameters.put(name, value);
+            }
+        });
+        if (payloads.isEmpty()) {
+            return commandCodec.encode(command);
+        }
+        HttpRequest request = commandCodec.encode(new Command(command.getSessionId(), command.getName(), parameters));
+        StreamingContent content = StreamingContent.split(request.getContentString(), payloads);
+        request.setContent(new byte[0]);
+        content.attachTo(request);
+        return request;
+    }
 }
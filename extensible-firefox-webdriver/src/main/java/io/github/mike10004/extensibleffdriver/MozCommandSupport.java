@@ -0,0 +1,169 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.extensibleffdriver.LimitedCommandExecutor.Commands;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.SessionId;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Class that executes Mozilla-specific commands: switching the command context,
+ * executing privileged script, and reading and writing preferences. Commands
+ * that require the chrome context query the current context from the browser,
+ * switch to the chrome context if necessary, and restore the previous context
+ * afterwards. They are serialized so that concurrent callers do not interleave
+ * context switches. The context is not cached, because it may be changed by
+ * commands that do not go through this class.
+ */
+class MozCommandSupport {
+
+    private static final String GET_PREF_SCRIPT = "const name = arguments[0];\n" +
+            "switch (Services.prefs.getPrefType(name)) {\n" +
+            "  case Services.prefs.PREF_STRING:\n" +
+            "    return Services.prefs.getStringPref(name);\n" +
+            "  case Services.prefs.PREF_INT:\n" +
+            "    return Services.prefs.getIntPref(name);\n" +
+            "  case Services.prefs.PREF_BOOL:\n" +
+            "    return Services.prefs.getBoolPref(name);\n" +
+            "  default:\n" +
+            "    return null;\n" +
+            "}\n";
+
+    private static final String SET_PREFS_SCRIPT = "const [prefs, cleared] = arguments;\n" +
+            "for (const name of cleared) {\n" +
+            "  Services.prefs.clearUserPref(name);\n" +
+            "}\n" +
+            "for (const [name, value] of Object.entries(prefs)) {\n" +
+            "  if (typeof value === 'boolean') {\n" +
+            "    Services.prefs.setBoolPref(name, value);\n" +
+            "  } else if (typeof value === 'number') {\n" +
+            "    Services.prefs.setIntPref(name, value);\n" +
+            "  } else {\n" +
+            "    Services.prefs.setStringPref(name, value);\n" +
+            "  }\n" +
+            "}\n";
+
+    private final Supplier<? extends SessionId> sessionIdSupplier;
+    private final LimitedCommandExecutor commandExecutor;
+    private final JavascriptExecutor scriptExecutor;
+    private final Object contextLock = new Object();
+
+    public MozCommandSupport(Supplier<? extends SessionId> sessionIdSupplier, LimitedCommandExecutor commandExecutor, JavascriptExecutor scriptExecutor) {
+        this.sessionIdSupplier = Objects.requireNonNull(sessionIdSupplier);
+        this.commandExecutor = Objects.requireNonNull(commandExecutor);
+        this.scriptExecutor = Objects.requireNonNull(scriptExecutor);
+    }
+
+    /**
+     * Gets the current context from the browser.
+     * @return the context
+     * @throws IOException on I/O error
+     */
+    public FirefoxContext getContext() throws IOException {
+        synchronized (contextLock) {
+            Object value = commandExecutor.executeForValue(new Command(sessionIdSupplier.get(), Commands.NAME_GET_CONTEXT, Collections.emptyMap()));
+            if (!(value instanceof String)) {
+                throw new IOException("expected context name in response value, but was " + value);
+            }
+            return FirefoxContext.fromName((String) value);
+        }
+    }
+
+    /**
+     * Sets the context in which subsequent commands are executed.
+     * @param context the context
+     * @throws IOException on I/O error
+     */
+    public void setContext(FirefoxContext context) throws IOException {
+        Objects.requireNonNull(context, "context");
+        synchronized (contextLock) {
+            commandExecutor.executeForValue(new Command(sessionIdSupplier.get(), Commands.NAME_SET_CONTEXT, ImmutableMap.of("context", context.getName())));
+        }
+    }
+
+    /**
+     * Executes a script in the chrome context, then restores the previous context.
+     * @param script the script
+     * @param args the script arguments
+     * @return the script return value
+     * @throws IOException on I/O error
+     */
+    @Nullable
+    public Object executePrivilegedScript(String script, Object... args) throws IOException {
+        synchronized (contextLock) {
+            FirefoxContext previous = getContext();
+            if (previous != FirefoxContext.CHROME) {
+                setContext(FirefoxContext.CHROME);
+            }
+            try {
+                return scriptExecutor.executeScript(script, args);
+            } finally {
+                if (previous != FirefoxContext.CHROME) {
+                    setContext(previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the value of a preference.
+     * @param name the preference name
+     * @return the value, which is a string, long, or boolean, or null if the preference is not set
+     * @throws IOException on I/O error
+     */
+    @Nullable
+    public Object getPreference(String name) throws IOException {
+        Objects.requireNonNull(name, "name");
+        return executePrivilegedScript(GET_PREF_SCRIPT, name);
+    }
+
+    /**
+     * Sets or clears preferences in a single script execution.
+     * @param preferences map of preference name to value; each value must be a string,
+     * integer, or boolean, or null to clear the user value of the preference
+     * @throws IOException on I/O error
+     */
+    public void setPreferences(Map<String, ?> preferences) throws IOException {
+        // null values are sent as a separate list, because a null map value may be dropped in serialization
+        Map<String, Object> values = new LinkedHashMap<>();
+        List<String> cleared = new ArrayList<>();
+        preferences.forEach((name, value) -> {
+            Objects.requireNonNull(name, "name");
+            if (value == null) {
+                cleared.add(name);
+            } else {
+                values.put(name, checkPreferenceValue(name, value));
+            }
+        });
+        if (!values.isEmpty() || !cleared.isEmpty()) {
+            executePrivilegedScript(SET_PREFS_SCRIPT, values, cleared);
+        }
+    }
+
+    static Object checkPreferenceValue(String name, Object value) {
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Long) {
+            long longValue = (Long) value;
+            checkArgument(longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE, "integer preference %s out of range: %s", name, value);
+            return (int) longValue;
+        }
+        throw new IllegalArgumentException(String.format("preference %s must be a string, integer, or boolean, but was %s", name, value.getClass().getName()));
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.base.Suppliers;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import java.io.Closeable;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Factory of HTTP clients that share a connection pool and dispatcher.
+ * Connections are kept alive between requests, and idle connections are
+ * evicted after a bounded interval. Clients created by this factory
+ * are closeable; when the last open client is closed, all idle connections
+ * are evicted immediately.
+ *
+ * <p>Drivers use the process-wide instance returned by {@link #getShared()}
+ * unless a factory is specified at construction. An instance created by
+ * a constructor is owned by the caller, who should {@link #close() close}
+ * it when it is no longer needed.
+ */
+public class PooledHttpClientFactory implements HttpClient.Factory, Closeable {
+
+    /**
+     * Default maximum number of idle connections retained by the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Default duration for which an idle connection is retained.
+     */
+    public static final Duration DEFAULT_KEEP_ALIVE = Duration.ofSeconds(30);
+
+    private final ConnectionPool pool;
+    private final Dispatcher dispatcher;
+    private final AtomicInteger openClients;
+    private volatile boolean closed;
+
+    /**
+     * Constructs an instance with default settings.
+     */
+    public PooledHttpClientFactory() {
+        this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param maxIdleConnections maximum number of idle connections to retain
+     * @param keepAlive duration for which an idle connection is retained
+     */
+    public PooledHttpClientFactory(int maxIdleConnections, Duration keepAlive) {
+        checkArgument(maxIdleConnections >= 0, "max idle connections must be nonnegative");
+        Objects.requireNonNull(keepAlive, "keep-alive duration");
+        checkArgument(!keepAlive.isNegative() && !keepAlive.isZero(), "keep-alive duration must be positive");
+        pool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        dispatcher = new Dispatcher();
+        openClients = new AtomicInteger();
+    }
+
+    private static final Supplier<PooledHttpClientFactory> shared = Suppliers.memoize(PooledHttpClientFactory::new);
+
+    /**
+     * Gets the process-wide instance. The process-wide instance is never closed.
+     * @return the shared factory
+     */
+    public static PooledHttpClientFactory getShared() {
+        return shared.get();
+    }
+
+    @Override
+    public HttpClient.Builder builder() {
+        return new HttpClient.Builder() {
+            @Override
+            public HttpClient createClient(URL url) {
+                checkState(!closed, "factory is closed");
+                OkHttpClient.Builder client = new OkHttpClient.Builder()
+                        .connectionPool(pool)
+                        .dispatcher(dispatcher)
+                        .followRedirects(true)
+                        .followSslRedirects(true)
+                        .proxy(proxy)
+                        .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .connectTimeout(connectionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                openClients.incrementAndGet();
+                return new StreamingOkHttpClient(client.build(), url, PooledHttpClientFactory.this::released);
+            }
+        };
+    }
+
+    private void released() {
+        if (openClients.decrementAndGet() <= 0) {
+            pool.evictAll();
+        }
+    }
+
+    /**
+     * Gets the number of clients created by this factory that have not been closed.
+     * @return count of open clients
+     */
+    public int getOpenClientCount() {
+        return openClients.get();
+    }
+
+    /**
+     * Gets the number of idle connections in the pool.
+     * @return count of idle connections
+     */
+    public int getIdleConnectionCount() {
+        return pool.idleConnectionCount();
+    }
+
+    /**
+     * Gets the number of asynchronous calls currently executing.
+     * @return count of running calls
+     */
+    public int getRunningCallCount() {
+        return dispatcher.runningCallsCount();
+    }
+
+    @Override
+    public void cleanupIdleClients() {
+        pool.evictAll();
+    }
+
+    /**
+     * Closes this factory. Idle connections are evicted, in-flight calls are cancelled,
+     * and the dispatcher threads are allowed to terminate. The process-wide
+     * instance ignores this method.
+     */
+    @Override
+    public void close() {
+        if (this == shared.get()) {
+            return;
+        }
+        closed = true;
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        pool.evictAll();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledHttpClientFactory{" +
+                "openClients=" + openClients +
+                ", connections=" + pool.connectionCount() +
+                ", closed=" + closed +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.collect.ImmutableList;
+import org.openqa.selenium.remote.http.HttpRequest;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Request body content that is composed of literal bytes interleaved with
+ * addon payloads. An instance is attached to an {@link HttpRequest} as an
+ * attribute so that a client that supports streaming can write the payloads
+ * directly to the connection.
+ */
+class StreamingContent {
+
+    /**
+     * Name of the request attribute whose value is a streaming content instance.
+     */
+    public static final String ATTRIBUTE_NAME = StreamingContent.class.getName();
+
+    private final ImmutableList<Object> parts;
+
+    private StreamingContent(List<?> parts) {
+        this.parts = ImmutableList.copyOf(parts);
+    }
+
+    /**
+     * Splits serialized content around placeholder tokens.
+     * @param serialized the serialized content, containing each placeholder token exactly once
+     * @param payloads map of placeholder token to payload
+     * @return the streaming content
+     */
+    public static StreamingContent split(String serialized, Map<String, AddonPayload> payloads) {
+        ImmutableList.Builder<Object> parts = ImmutableList.builder();
+        int position = 0;
+        while (position < serialized.length()) {
+            int nextTokenIndex = -1;
+            String nextToken = null;
+            for (String token : payloads.keySet()) {
+                int index = serialized.indexOf(token, position);
+                if (index >= 0 && (nextTokenIndex < 0 || index < nextTokenIndex)) {
+                    nextTokenIndex = index;
+                    nextToken = token;
+                }
+            }
+            if (nextToken == null) {
+                parts.add(serialized.substring(position).getBytes(UTF_8));
+                break;
+            }
+            parts.add(serialized.substring(position, nextTokenIndex).getBytes(UTF_8));
+            parts.add(payloads.get(nextToken));
+            position = nextTokenIndex + nextToken.length();
+        }
+        return new StreamingContent(parts.build());
+    }
+
+    /**
+     * Gets the streaming content attached to a request, if any.
+     * @param request the request
+     * @return the content, or null if the request has no streaming content
+     */
+    @Nullable
+    public static StreamingContent getAttached(HttpRequest request) {
+        return (StreamingContent) request.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * Attaches this content to a request.
+     * @param request the request
+     */
+    public void attachTo(HttpRequest request) {
+        request.setAttribute(ATTRIBUTE_NAME, this);
+        long length = length();
+        if (length >= 0) {
+            request.setHeader("Content-Length", String.valueOf(length));
+        } else {
+            request.removeHeader("Content-Length");
+        }
+    }
+
+    /**
+     * Gets the total length of the content, if it can be determined without reading
+     * the payloads.
+     * @return the length, or -1 if unknown
+     */
+    public long length() {
+        long total = 0;
+        for (Object part : parts) {
+            if (part instanceof byte[]) {
+                total += ((byte[]) part).length;
+            } else {
+                long payloadLength = ((AddonPayload) part).base64Length();
+                if (payloadLength < 0) {
+                    return -1;
+                }
+                total += payloadLength;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes the content to an output stream. The stream is not closed.
+     * @param out the output stream
+     * @throws IOException on I/O error
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        for (Object part : parts) {
+            if (part instanceof byte[]) {
+                out.write((byte[]) part);
+            } else {
+                ((AddonPayload) part).writeBase64(out);
+            }
+        }
+    }
+
+    /**
+     * Writes the content to a byte array. This is only for clients that
+     * do not support streaming.
+     * @return the content bytes
+     * @throws IOException on I/O error
+     */
+    public byte[] toByteArray() throws IOException {
+        long length = length();
+        checkArgument(length <= Integer.MAX_VALUE, "content too large to buffer: %s", length);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(256, (int) length));
+        writeTo(baos);
+        return baos.toByteArray();
+    }
+}
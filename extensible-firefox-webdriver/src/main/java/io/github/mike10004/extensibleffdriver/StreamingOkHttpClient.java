@@ -0,0 +1,245 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.io.ByteStreams;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP client implementation that writes {@link StreamingContent} directly
+ * to the connection instead of buffering the request body. Requests without
+ * streaming content are handled the same way Selenium's OkHttp client
+ * handles them. Closing a client releases it to the factory that created it;
+ * the underlying connection pool is owned by the factory.
+ */
+class StreamingOkHttpClient implements HttpClient, Closeable {
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final okhttp3.OkHttpClient client;
+    private final URL baseUrl;
+    private final Runnable releaseAction;
+    private final AtomicBoolean closed;
+
+    public StreamingOkHttpClient(okhttp3.OkHttpClient client, URL baseUrl, Runnable releaseAction) {
+        this.client = Objects.requireNonNull(client);
+        this.baseUrl = Objects.requireNonNull(baseUrl);
+        this.releaseAction = Objects.requireNonNull(releaseAction);
+        closed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            releaseAction.run();
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        try (okhttp3.Response response = client.newCall(toOkHttpRequest(request)).execute()) {
+            return toHttpResponse(response);
+        }
+    }
+
+    /**
+     * Executes a request asynchronously. Cancelling the returned future,
+     * or completing it exceptionally, cancels the HTTP call.
+     * @param request the request
+     * @return a future response
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Call call;
+        try {
+            call = client.newCall(toOkHttpRequest(request));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete((response, error) -> {
+            if (error != null) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response response) throws IOException {
+                try (okhttp3.Response r = response) {
+                    future.complete(toHttpResponse(r));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    Request toOkHttpRequest(HttpRequest request) throws IOException {
+        Request.Builder builder = new Request.Builder();
+        String rawUrl;
+        if (request.getUri().startsWith("http:") || request.getUri().startsWith("https:")) {
+            rawUrl = request.getUri();
+        } else {
+            rawUrl = baseUrl.toExternalForm().replaceAll("/$", "") + request.getUri();
+        }
+        HttpUrl parsed = HttpUrl.parse(rawUrl);
+        if (parsed == null) {
+            throw new IOException("unable to parse URL: " + baseUrl + request.getUri());
+        }
+        HttpUrl.Builder urlBuilder = parsed.newBuilder();
+        for (String name : request.getQueryParameterNames()) {
+            for (String value : request.getQueryParameters(name)) {
+                urlBuilder.addQueryParameter(name, value);
+            }
+        }
+        builder.url(urlBuilder.build());
+        for (String name : request.getHeaderNames()) {
+            // the body determines the length
+            if (!"Content-Length".equalsIgnoreCase(name)) {
+                for (String value : request.getHeaders(name)) {
+                    builder.addHeader(name, value);
+                }
+            }
+        }
+        if (request.getHeader("User-Agent") == null) {
+            builder.addHeader("User-Agent", USER_AGENT);
+        }
+        switch (request.getMethod()) {
+            case GET:
+                builder.get();
+                break;
+            case POST:
+                MediaType mediaType = MediaType.parse(Optional.ofNullable(request.getHeader("Content-Type")).orElse(DEFAULT_CONTENT_TYPE));
+                StreamingContent content = StreamingContent.getAttached(request);
+                if (content != null) {
+                    builder.post(new StreamingRequestBody(mediaType, content));
+                } else {
+                    builder.post(new ContentStreamRequestBody(mediaType, request.consumeContentStream(), contentLength(request)));
+                }
+                break;
+            case DELETE:
+                builder.delete();
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported method: " + request.getMethod());
+        }
+        return builder.build();
+    }
+
+    private static long contentLength(HttpRequest request) {
+        String contentLength = request.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return -1;
+    }
+
+    static HttpResponse toHttpResponse(okhttp3.Response response) throws IOException {
+        HttpResponse toReturn = new HttpResponse();
+        okhttp3.ResponseBody body = response.body();
+        toReturn.setContent(body == null ? new byte[0] : body.bytes());
+        toReturn.setStatus(response.code());
+        for (String name : response.headers().names()) {
+            for (String value : response.headers(name)) {
+                toReturn.addHeader(name, value);
+            }
+        }
+        return toReturn;
+    }
+
+    private static class StreamingRequestBody extends RequestBody {
+
+        private final MediaType mediaType;
+        private final StreamingContent content;
+
+        public StreamingRequestBody(MediaType mediaType, StreamingContent content) {
+            this.mediaType = mediaType;
+            this.content = content;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return content.length();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            content.writeTo(sink.outputStream());
+        }
+    }
+
+    /**
+     * Request body that writes the content stream of a request without copying
+     * it into a new array. The stream is marked when the body is created and
+     * reset before each write, so that the body can be written again if the
+     * call is retried; a stream that does not support marks can be written once.
+     */
+    private static class ContentStreamRequestBody extends RequestBody {
+
+        private final MediaType mediaType;
+        private final InputStream content;
+        private final long length;
+        private final AtomicBoolean written;
+
+        public ContentStreamRequestBody(MediaType mediaType, InputStream content, long length) {
+            this.mediaType = mediaType;
+            this.content = Objects.requireNonNull(content);
+            this.length = length;
+            written = new AtomicBoolean(false);
+            if (content.markSupported()) {
+                content.mark(Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            if (written.getAndSet(true)) {
+                if (!content.markSupported()) {
+                    throw new IOException("request content stream has already been written");
+                }
+                content.reset();
+            }
+            ByteStreams.copy(content, sink.outputStream());
+        }
+    }
+}
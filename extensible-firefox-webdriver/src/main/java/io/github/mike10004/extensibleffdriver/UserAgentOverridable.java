@@ -0,0 +1,20 @@
+package io.github.mike10004.extensibleffdriver;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Interface of drivers whose browser user agent can be changed in a running session.
+ * The new user agent takes effect on the next navigation; pages that are already
+ * loaded keep the user agent they were loaded with.
+ */
+public interface UserAgentOverridable {
+
+    /**
+     * Sets or clears the user agent override.
+     * @param userAgent the user agent string, or null to restore the browser default
+     * @throws IOException on I/O error or if the browser rejects the change
+     */
+    void setUserAgentOverride(@Nullable String userAgent) throws IOException;
+
+}
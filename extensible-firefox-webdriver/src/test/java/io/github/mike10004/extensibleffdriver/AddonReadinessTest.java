@@ -0,0 +1,68 @@
+package io.github.mike10004.extensibleffdriver;
+
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AddonReadinessTest {
+
+    private static class FakeAsyncScriptExecutor implements JavascriptExecutor {
+
+        private final Function<List<Object>, Object> behavior;
+        public List<Object> lastArgs;
+
+        public FakeAsyncScriptExecutor(Function<List<Object>, Object> behavior) {
+            this.behavior = behavior;
+        }
+
+        @Override
+        public Object executeScript(String script, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object executeAsyncScript(String script, Object... args) {
+            lastArgs = Arrays.asList(args);
+            return behavior.apply(lastArgs);
+        }
+    }
+
+    @Test
+    public void await() {
+        FakeAsyncScriptExecutor executor = new FakeAsyncScriptExecutor(args -> true);
+        assertTrue(AddonReadiness.await(executor, "foo@example.com", Duration.ofMillis(1500)));
+        assertEquals(Arrays.asList(AddonReadiness.ATTRIBUTE, "foo@example.com", 1500L), executor.lastArgs);
+        assertFalse(AddonReadiness.await(new FakeAsyncScriptExecutor(args -> false), "foo@example.com", Duration.ofSeconds(1)));
+        assertFalse(AddonReadiness.await(new FakeAsyncScriptExecutor(args -> null), "foo@example.com", Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void await_scriptTimeout() {
+        FakeAsyncScriptExecutor executor = new FakeAsyncScriptExecutor(args -> {
+            throw new ScriptTimeoutException("timed out");
+        });
+        assertFalse(AddonReadiness.await(executor, "foo@example.com", Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void await_invalidId() {
+        FakeAsyncScriptExecutor executor = new FakeAsyncScriptExecutor(args -> true);
+        for (String id : Arrays.asList("", "foo bar")) {
+            try {
+                AddonReadiness.await(executor, id, Duration.ofSeconds(1));
+                fail("should reject " + id);
+            } catch (IllegalArgumentException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import io.github.mike10004.nanochamp.server.NanoControl;
+import io.github.mike10004.nanochamp.server.NanoResponse;
+import io.github.mike10004.nanochamp.server.NanoServer;
+import org.junit.Test;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.SessionId;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AddonSupportTest {
+
+    private static final SessionId SESSION_ID = new SessionId("0f0e6d59-0d7c-4bb1-a3c5-7a5b2e3c9b11");
+
+    private static AddonInstallRequest requestFor(String content) {
+        return AddonInstallRequest.fromBase64(Base64.getEncoder().encodeToString(content.getBytes(UTF_8)), AddonPersistence.TEMPORARY);
+    }
+
+    @Test
+    public void installAddons_concurrentWithFailures() throws Exception {
+        String badAddon = Base64.getEncoder().encodeToString("bad".getBytes(UTF_8));
+        List<AddonInstallRequest> requests = Arrays.asList(requestFor("good1"), requestFor("bad"), requestFor("good2"));
+        CountDownLatch allReceived = new CountDownLatch(requests.size());
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    Map<String, String> files = new HashMap<>();
+                    try {
+                        session.parseBody(files);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    allReceived.countDown();
+                    boolean concurrent;
+                    try {
+                        concurrent = allReceived.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (!concurrent) {
+                        return NanoResponse.status(500).jsonUtf8("{\"value\": {\"error\": \"unknown error\", \"message\": \"requests were not concurrent\", \"stacktrace\": \"\"}}");
+                    }
+                    if (files.get("postData").contains(badAddon)) {
+                        return NanoResponse.status(500).jsonUtf8("{\"value\": {\"error\": \"unknown error\", \"message\": \"could not install addon\", \"stacktrace\": \"\"}}");
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": \"addon" + allReceived.getCount() + "@test\"}");
+                }).build();
+        AddonInstallReport report;
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory();
+             AddonSupport addonSupport = new AddonSupport(() -> SESSION_ID, new LimitedCommandExecutor(() -> factory.createClient(toUrl(control))))) {
+            report = addonSupport.installAddonsAsync(requests, Duration.ofSeconds(10)).get(15, TimeUnit.SECONDS);
+        }
+        assertEquals("outcomes", requests.size(), report.getOutcomes().size());
+        assertFalse("all succeeded", report.isAllSucceeded());
+        assertEquals("failures", 1, report.getFailures().size());
+        AddonInstallReport.Outcome failure = report.getFailures().get(0);
+        assertEquals("failure index", 1, failure.getIndex());
+        assertTrue("failure type: " + failure.getFailure(), failure.getFailure() instanceof AddonSupport.NonSuccessResponseException);
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals("request at " + i, requests.get(i), report.getOutcomes().get(i).getRequest());
+        }
+        assertNull("installed addon of failure", failure.getInstalledAddon());
+        assertNotNull("installed addon of success", report.getOutcomes().get(0).getInstalledAddon());
+    }
+
+    @Test
+    public void installAddon_registryAndReset() throws Exception {
+        byte[] zipBytes = "not really a zip".getBytes(UTF_8);
+        AtomicInteger installCount = new AtomicInteger();
+        Set<String> uninstalled = Collections.synchronizedSet(new HashSet<>());
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    Map<String, String> files = new HashMap<>();
+                    try {
+                        session.parseBody(files);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (session.getUri().endsWith("/moz/addon/uninstall")) {
+                        Map<?, ?> params = new Json().toType(files.get("postData"), Map.class);
+                        uninstalled.add((String) params.get("id"));
+                        return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": \"addon" + installCount.incrementAndGet() + "@test\"}");
+                }).build();
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory();
+             AddonSupport addonSupport = new AddonSupport(() -> SESSION_ID, new LimitedCommandExecutor(() -> factory.createClient(toUrl(control))))) {
+            AtomicInteger opened = new AtomicInteger();
+            ByteSource countingSource = new ByteSource() {
+                @Override
+                public InputStream openStream() {
+                    opened.incrementAndGet();
+                    return new ByteArrayInputStream(zipBytes);
+                }
+
+                @Override
+                public Optional<Long> sizeIfKnown() {
+                    // the fake server does not read chunked request bodies
+                    return Optional.of((long) zipBytes.length);
+                }
+            };
+            InstalledAddon first = addonSupport.installAddon(AddonInstallRequest.fromByteSource(countingSource, AddonPersistence.TEMPORARY));
+            assertEquals("hashed while streaming", 1, opened.get());
+            assertEquals("id", "addon1@test", first.getId());
+            assertEquals("persistence", AddonPersistence.TEMPORARY, first.getPersistence());
+            assertEquals("source hash", Hashing.sha256().hashBytes(zipBytes).toString(), first.getSourceHash());
+            InstalledAddon second = addonSupport.installAddonAsync(AddonInstallRequest.fromBase64(Base64.getEncoder().encodeToString(zipBytes), AddonPersistence.PERMANENT), Duration.ofSeconds(10)).get(15, TimeUnit.SECONDS);
+            assertEquals("persistence", AddonPersistence.PERMANENT, second.getPersistence());
+            assertEquals("source hash from base-64", first.getSourceHash(), second.getSourceHash());
+            assertEquals("registry", Arrays.asList(first, second), addonSupport.getInstalledAddons());
+            addonSupport.uninstallAddon(first.toUninstallRequest());
+            assertEquals("registry after uninstall", Collections.singletonList(second), addonSupport.getInstalledAddons());
+            addonSupport.installAddon(AddonInstallRequest.fromByteSource(ByteSource.wrap(zipBytes), AddonPersistence.TEMPORARY));
+            uninstalled.clear();
+            addonSupport.resetAddons(Duration.ofSeconds(10));
+            assertEquals("uninstalled on reset", new HashSet<>(Arrays.asList("addon2@test", "addon3@test")), uninstalled);
+            assertEquals("registry after reset", Collections.emptyList(), addonSupport.getInstalledAddons());
+        }
+    }
+
+    private static URL toUrl(NanoControl control) {
+        try {
+            return control.baseUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
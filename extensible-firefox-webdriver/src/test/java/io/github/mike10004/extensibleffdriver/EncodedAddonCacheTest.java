@@ -0,0 +1,91 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EncodedAddonCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static AddonPayload payloadOf(AddonInstallRequest request) {
+        Map<String, Object> params = new HashMap<>();
+        request.toParameters(params);
+        return (AddonPayload) params.get("addon");
+    }
+
+    private static String encodedBy(AddonInstallRequest request) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        payloadOf(request).writeBase64(baos);
+        return new String(baos.toByteArray(), US_ASCII);
+    }
+
+    @Test
+    public void fromPath() throws Exception {
+        byte[] zipBytes = randomBytes(10000, 1);
+        Path zipFile = temporaryFolder.newFile("addon.zip").toPath();
+        Files.write(zipFile, zipBytes);
+        EncodedAddonCache cache = new EncodedAddonCache();
+        AddonInstallRequest first = cache.fromPath(zipFile, AddonPersistence.TEMPORARY);
+        assertEquals("encoding", Base64.getEncoder().encodeToString(zipBytes), encodedBy(first));
+        assertEquals("misses after first", 1, cache.getMissCount());
+        AddonInstallRequest second = cache.fromPath(zipFile, AddonPersistence.TEMPORARY);
+        assertEquals("encoding", Base64.getEncoder().encodeToString(zipBytes), encodedBy(second));
+        assertEquals("hits after second", 1, cache.getHitCount());
+        assertEquals("known hash", Hashing.sha256().hashBytes(zipBytes), payloadOf(second).sha256IfKnown());
+        assertTrue("decoded", ByteSource.wrap(zipBytes).contentEquals(payloadOf(second).getZipBytes()));
+        byte[] modifiedBytes = randomBytes(10000, 2);
+        Files.write(zipFile, modifiedBytes);
+        Files.setLastModifiedTime(zipFile, FileTime.fromMillis(Files.getLastModifiedTime(zipFile).toMillis() + 60000));
+        AddonInstallRequest third = cache.fromPath(zipFile, AddonPersistence.TEMPORARY);
+        assertEquals("encoding after modification", Base64.getEncoder().encodeToString(modifiedBytes), encodedBy(third));
+        assertEquals("misses after modification", 2, cache.getMissCount());
+        assertEquals("hits after modification", 1, cache.getHitCount());
+    }
+
+    @Test
+    public void fromByteSource_sharesEncodingWithSameContent() throws Exception {
+        byte[] zipBytes = randomBytes(1000, 3);
+        Path zipFile = temporaryFolder.newFile("addon.zip").toPath();
+        Files.write(zipFile, zipBytes);
+        EncodedAddonCache cache = new EncodedAddonCache();
+        cache.fromByteSource(ByteSource.wrap(zipBytes), AddonPersistence.PERMANENT);
+        cache.fromPath(zipFile, AddonPersistence.PERMANENT);
+        assertEquals("misses", 1, cache.getMissCount());
+        assertEquals("hits", 1, cache.getHitCount());
+        assertEquals("size", 1, cache.size());
+    }
+
+    @Test
+    public void evictsByEncodedSize() throws Exception {
+        EncodedAddonCache cache = new EncodedAddonCache(3000);
+        for (int i = 0; i < 4; i++) {
+            cache.fromByteSource(ByteSource.wrap(randomBytes(999, i)), AddonPersistence.TEMPORARY);
+        }
+        assertEquals("size", 2, cache.size());
+        cache.fromByteSource(ByteSource.wrap(randomBytes(999, 0)), AddonPersistence.TEMPORARY);
+        assertEquals("misses", 5, cache.getMissCount());
+    }
+}
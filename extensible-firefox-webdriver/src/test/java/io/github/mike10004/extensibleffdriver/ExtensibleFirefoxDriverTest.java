@@ -14,8 +14,6 @@ import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.firefox.GeckoDriverService;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,10 +21,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Base64;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ExtensibleFirefoxDriverTest {
 
@@ -57,7 +57,8 @@ public class ExtensibleFirefoxDriverTest {
     public void installAddon_unsigned_temporary(AddonInstallRequest installRequest) throws Exception {
         BehaviorVerifier<Void> verifier = (driver, baseUri) -> {
             driver.get(baseUri.toString());
-            WebElement element = new WebDriverWait(driver, 3).until(ExpectedConditions.presenceOfElementLocated(By.id("injected")));
+            assertTrue("addon ready", driver.awaitAddonReady(SAMPLE_EXTENSION_ID, Duration.ofSeconds(3)));
+            WebElement element = driver.findElement(By.id("injected"));
             String text = element.getText();
             assertEquals("element text", "Hello", text.trim());
             return (Void) null;
@@ -112,12 +113,8 @@ public class ExtensibleFirefoxDriverTest {
             AddonUninstallRequest uninstallRequest = AddonUninstallRequest.fromId(SAMPLE_EXTENSION_ID);
             driver.uninstallAddon(uninstallRequest);
             driver.get(baseUri.toString());
-            try {
-                new WebDriverWait(driver, 3).until(ExpectedConditions.presenceOfElementLocated(By.id("injected")));
-                fail("extension still installed it seems");
-            } catch (org.openqa.selenium.TimeoutException ignore) {
-                // we expect NOT to find the element
-            }
+            assertFalse("extension still installed it seems", driver.awaitAddonReady(SAMPLE_EXTENSION_ID, Duration.ofSeconds(3)));
+            assertTrue("injected element", driver.findElements(By.id("injected")).isEmpty());
             return (Void) null;
         };
         testInstallAddon(installRequest, verifier);
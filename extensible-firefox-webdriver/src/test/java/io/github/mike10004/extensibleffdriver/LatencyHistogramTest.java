@@ -0,0 +1,60 @@
+package io.github.mike10004.extensibleffdriver;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundaries() {
+        long[] values = {0, 1, 127, 128, 129, 130, 255, 256, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue("highest " + highest + " >= value " + value, highest >= value);
+            assertTrue("relative error for " + value, highest - value <= Math.max(0, value / 64));
+            if (index > 0) {
+                assertTrue("previous bucket below " + value, LatencyHistogram.highestEquivalentValue(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(Duration.ofMillis(i));
+        }
+        assertEquals("count", 1000, histogram.getCount());
+        assertEquals("max", Duration.ofMillis(1000), histogram.getMax());
+        assertWithin(Duration.ofMillis(500), histogram.getValueAtPercentile(50));
+        assertWithin(Duration.ofMillis(990), histogram.getValueAtPercentile(99));
+        assertEquals("p100", Duration.ofMillis(1000), histogram.getValueAtPercentile(100));
+        assertEquals("empty", Duration.ZERO, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void percentiles_random() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.abs(random.nextLong() % 10_000_000_000L);
+            histogram.recordNanos(values[i]);
+        }
+        Arrays.sort(values);
+        assertWithin(Duration.ofNanos(values[4999]), histogram.getValueAtPercentile(50));
+        assertWithin(Duration.ofNanos(values[9899]), histogram.getValueAtPercentile(99));
+    }
+
+    private static void assertWithin(Duration expected, Duration actual) {
+        long tolerance = expected.toNanos() / 64 + 1;
+        assertTrue(String.format("expected %s but was %s", expected, actual), Math.abs(expected.toNanos() - actual.toNanos()) <= tolerance);
+    }
+}
@@ -0,0 +1,297 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.io.ByteSource;
+import io.github.mike10004.nanochamp.server.NanoControl;
+import io.github.mike10004.nanochamp.server.NanoResponse;
+import io.github.mike10004.nanochamp.server.NanoServer;
+import org.junit.Test;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.http.HttpRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LimitedCommandExecutorTest {
+
+    private static final SessionId SESSION_ID = new SessionId("a2bc5c7d-95c6-4d73-9b26-0a9e8bd1f4c6");
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Command installCommand(AddonInstallRequest request) {
+        Map<String, Object> params = new HashMap<>();
+        request.toParameters(params);
+        return new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_INSTALL_ADDON, params);
+    }
+
+    @Test
+    public void encode_streamingMatchesBase64() throws Exception {
+        LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> {
+            throw new UnsupportedOperationException("not used");
+        });
+        for (int length : new int[]{0, 1, 2, 3, 1000, 65537}) {
+            byte[] zipBytes = randomBytes(length);
+            HttpRequest streamed = executor.encode(installCommand(AddonInstallRequest.fromByteSource(ByteSource.wrap(zipBytes), AddonPersistence.TEMPORARY)));
+            StreamingContent content = StreamingContent.getAttached(streamed);
+            assertNotNull("streaming content", content);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            content.writeTo(baos);
+            assertEquals("content length", baos.size(), content.length());
+            assertEquals("content length header", String.valueOf(baos.size()), streamed.getHeader("Content-Length"));
+            if (length > 0) {
+                HttpRequest buffered = executor.encode(installCommand(AddonInstallRequest.fromBase64(Base64.getEncoder().encodeToString(zipBytes), AddonPersistence.TEMPORARY)));
+                assertEquals("body", parseJson(buffered.getContentString()), parseJson(new String(baos.toByteArray(), UTF_8)));
+            }
+        }
+    }
+
+    @Test
+    public void execute_streaming() throws Exception {
+        byte[] zipBytes = randomBytes(100 * 1024 + 1);
+        AtomicReference<String> requestBody = new AtomicReference<>();
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    Map<String, String> files = new HashMap<>();
+                    try {
+                        session.parseBody(files);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    requestBody.set(files.get("postData"));
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                }).build();
+        String expected;
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory()) {
+            LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)));
+            Response response = executor.execute(installCommand(AddonInstallRequest.fromByteSource(ByteSource.wrap(zipBytes), AddonPersistence.PERMANENT)));
+            assertEquals("state", "success", response.getState());
+            expected = executor.encode(installCommand(AddonInstallRequest.fromBase64(Base64.getEncoder().encodeToString(zipBytes), AddonPersistence.PERMANENT))).getContentString();
+            executor.close();
+        }
+        assertEquals("request body", parseJson(expected), parseJson(requestBody.get()));
+    }
+
+    @Test
+    public void close_releasesPooledConnections() throws Exception {
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    try {
+                        session.parseBody(new HashMap<>());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                }).build();
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory()) {
+            LimitedCommandExecutor executor1 = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)));
+            LimitedCommandExecutor executor2 = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)));
+            Command command = new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_UNINSTALL_ADDON, Collections.singletonMap("id", "foo@bar"));
+            executor1.execute(command);
+            executor2.execute(command);
+            assertEquals("open clients", 2, factory.getOpenClientCount());
+            assertTrue("idle connections kept alive", factory.getIdleConnectionCount() > 0);
+            executor1.close();
+            assertEquals("open clients after first close", 1, factory.getOpenClientCount());
+            executor2.close();
+            assertEquals("open clients after second close", 0, factory.getOpenClientCount());
+            assertEquals("idle connections after all closed", 0, factory.getIdleConnectionCount());
+        }
+    }
+
+    @Test
+    public void execute_notifiesListeners() throws Exception {
+        byte[] zipBytes = randomBytes(3000);
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    try {
+                        session.parseBody(new HashMap<>());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (session.getUri().endsWith("/uninstall")) {
+                        return NanoResponse.status(500).jsonUtf8("{\"value\": {\"error\": \"unknown error\", \"message\": \"not installed\", \"stacktrace\": \"\"}}");
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": \"foo@bar\"}");
+                }).build();
+        List<CommandEvent> events = new CopyOnWriteArrayList<>();
+        CommandLatencyHistograms histograms = new CommandLatencyHistograms();
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory();
+             LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)))) {
+            executor.addCommandListener(events::add);
+            executor.addCommandListener(event -> {
+                throw new IllegalStateException("listener failure must be ignored");
+            });
+            executor.addCommandListener(histograms);
+            executor.execute(installCommand(AddonInstallRequest.fromByteSource(ByteSource.wrap(zipBytes), AddonPersistence.TEMPORARY)));
+            executor.executeAsync(new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_UNINSTALL_ADDON, Collections.singletonMap("id", "foo@bar")), Duration.ofSeconds(5)).get(10, TimeUnit.SECONDS);
+        }
+        // the listener may be notified of the async completion just after the future's waiter
+        long start = System.nanoTime();
+        while (events.size() < 2 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            Thread.sleep(10);
+        }
+        assertEquals("events", 2, events.size());
+        CommandEvent install = events.get(0);
+        assertEquals("command", LimitedCommandExecutor.Commands.NAME_INSTALL_ADDON, install.getCommandName());
+        assertEquals("session", SESSION_ID.toString(), install.getSessionId());
+        assertEquals("outcome", CommandEvent.Outcome.SUCCESS, install.getOutcome());
+        assertTrue("request bytes include payload: " + install.getRequestBytes(), install.getRequestBytes() > 4000);
+        assertEquals("response bytes", "{\"value\": \"foo@bar\"}".length(), install.getResponseBytes());
+        assertEquals("total", install.getEncodeDuration().plus(install.getHttpDuration()).plus(install.getDecodeDuration()), install.getTotalDuration());
+        assertEquals("uninstall outcome", CommandEvent.Outcome.ERROR_RESPONSE, events.get(1).getOutcome());
+        assertEquals("histogram count", 1, histograms.getStats(LimitedCommandExecutor.Commands.NAME_INSTALL_ADDON).getTotalLatency().getCount());
+        assertEquals("error responses", 1, histograms.getStats(LimitedCommandExecutor.Commands.NAME_UNINSTALL_ADDON).getOutcomeCount(CommandEvent.Outcome.ERROR_RESPONSE));
+    }
+
+    @Test
+    public void executeForValue_contextAndCdpCommands() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    Map<String, String> files = new HashMap<>();
+                    try {
+                        session.parseBody(files);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    requests.add(session.getUri() + " " + parseJson(files.get("postData")));
+                    if (session.getUri().endsWith("/moz/context")) {
+                        return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                    }
+                    return NanoResponse.status(500).jsonUtf8("{\"value\": {\"error\": \"unknown error\", \"message\": \"no such domain\", \"stacktrace\": \"\"}}");
+                }).build();
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory();
+             LimitedCommandExecutor firefoxExecutor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)));
+             LimitedCommandExecutor chromeExecutor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)), LimitedCommandExecutor.Commands.getChromeList())) {
+            firefoxExecutor.executeForValue(new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_SET_CONTEXT, Collections.singletonMap("context", "chrome")));
+            try {
+                chromeExecutor.executeForValue(new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_EXECUTE_CDP_COMMAND, Collections.singletonMap("cmd", "Network.setUserAgentOverride")));
+                fail("should have thrown");
+            } catch (AddonSupport.NonSuccessResponseException ignore) {
+            }
+            try {
+                chromeExecutor.executeForValue(new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_SET_CONTEXT, Collections.singletonMap("context", "chrome")));
+                fail("chrome executor should not handle moz commands");
+            } catch (RuntimeException ignore) {
+            }
+        }
+        assertEquals("requests", Arrays.asList(
+                "/session/" + SESSION_ID + "/moz/context {context=chrome}",
+                "/session/" + SESSION_ID + "/goog/cdp/execute {cmd=Network.setUserAgentOverride}"), requests);
+    }
+
+    private static Map<?, ?> parseJson(String json) {
+        return new Json().toType(json, Map.class);
+    }
+
+    private static URL toUrl(NanoControl control) {
+        try {
+            return control.baseUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void executeAsync_deadline() throws Exception {
+        testExecuteAsyncAborted(future -> {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("should have timed out");
+            } catch (ExecutionException e) {
+                assertTrue("expect timeout: " + e.getCause(), e.getCause() instanceof TimeoutException);
+            }
+        });
+    }
+
+    @Test
+    public void executeAsync_cancel() throws Exception {
+        testExecuteAsyncAborted(future -> {
+            future.cancel(true);
+            assertTrue("cancelled", future.isCancelled());
+        });
+    }
+
+    @Test
+    public void executeAsync_rejectsNonPositiveDeadline() throws Exception {
+        try (LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> {
+            throw new AssertionError("command should not be sent");
+        })) {
+            Command command = new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_UNINSTALL_ADDON, Collections.singletonMap("id", "foo@bar"));
+            for (Duration deadline : Arrays.asList(Duration.ZERO, Duration.ofMillis(-1))) {
+                try {
+                    executor.executeAsync(command, deadline);
+                    fail("should reject deadline " + deadline);
+                } catch (IllegalArgumentException ignore) {
+                }
+            }
+        }
+    }
+
+    private interface AbortAction {
+        void abort(CompletableFuture<Response> future) throws Exception;
+    }
+
+    private void testExecuteAsyncAborted(AbortAction action) throws Exception {
+        CountDownLatch requestReceived = new CountDownLatch(1);
+        CountDownLatch releaseResponse = new CountDownLatch(1);
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    requestReceived.countDown();
+                    try {
+                        releaseResponse.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                }).build();
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory()) {
+            LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)));
+            Command command = new Command(SESSION_ID, LimitedCommandExecutor.Commands.NAME_UNINSTALL_ADDON, Collections.singletonMap("id", "foo@bar"));
+            CompletableFuture<Response> future = executor.executeAsync(command, Duration.ofMillis(500));
+            assertTrue("request received", requestReceived.await(5, TimeUnit.SECONDS));
+            action.abort(future);
+            long start = System.nanoTime();
+            while (factory.getRunningCallCount() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(10);
+            }
+            assertEquals("running calls after abort", 0, factory.getRunningCallCount());
+            executor.close();
+        } finally {
+            releaseResponse.countDown();
+        }
+    }
+}
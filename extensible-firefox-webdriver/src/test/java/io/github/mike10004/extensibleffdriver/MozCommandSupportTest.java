@@ -0,0 +1,124 @@
+package io.github.mike10004.extensibleffdriver;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.nanochamp.server.NanoControl;
+import io.github.mike10004.nanochamp.server.NanoResponse;
+import io.github.mike10004.nanochamp.server.NanoServer;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.SessionId;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MozCommandSupportTest {
+
+    private static final SessionId SESSION_ID = new SessionId("9d4c1f0e-6b2a-4e8f-b7d3-2c5a1e9f0b46");
+
+    private static class RecordingScriptExecutor implements JavascriptExecutor {
+
+        public final List<List<Object>> scriptArgs = new CopyOnWriteArrayList<>();
+        public final List<String> contexts;
+
+        public RecordingScriptExecutor(List<String> contexts) {
+            this.contexts = contexts;
+        }
+
+        @Override
+        public Object executeScript(String script, Object... args) {
+            contexts.add("script");
+            scriptArgs.add(Arrays.asList(args));
+            return null;
+        }
+
+        @Override
+        public Object executeAsyncScript(String script, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void contextSwitching() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicReference<String> browserContext = new AtomicReference<>("content");
+        NanoServer server = NanoServer.builder()
+                .session(session -> {
+                    Map<String, String> files = new HashMap<>();
+                    try {
+                        session.parseBody(files);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (!session.getUri().endsWith("/moz/context")) {
+                        return NanoResponse.status(404).jsonUtf8("{\"value\": {\"error\": \"unknown command\", \"message\": \"\", \"stacktrace\": \"\"}}");
+                    }
+                    if ("GET".equals(session.getMethod().name())) {
+                        events.add("get");
+                        return NanoResponse.status(200).jsonUtf8("{\"value\": \"" + browserContext.get() + "\"}");
+                    }
+                    Map<?, ?> body = new Json().toType(files.get("postData"), Map.class);
+                    String context = (String) body.get("context");
+                    browserContext.set(context);
+                    events.add(context);
+                    return NanoResponse.status(200).jsonUtf8("{\"value\": null}");
+                }).build();
+        RecordingScriptExecutor scriptExecutor = new RecordingScriptExecutor(events);
+        try (NanoControl control = server.startServer();
+             PooledHttpClientFactory factory = new PooledHttpClientFactory();
+             LimitedCommandExecutor executor = new LimitedCommandExecutor(() -> factory.createClient(toUrl(control)))) {
+            MozCommandSupport support = new MozCommandSupport(() -> SESSION_ID, executor, scriptExecutor);
+            Map<String, Object> prefs = new LinkedHashMap<>();
+            prefs.put("general.useragent.override", "Foo/1.0");
+            prefs.put("network.http.max-connections", 100L);
+            prefs.put("privacy.resistFingerprinting", true);
+            prefs.put("intl.accept_languages", null);
+            support.setPreferences(prefs);
+            assertEquals("switched to chrome and back", Arrays.asList("get", "chrome", "script", "content"), events);
+            assertEquals("script args", Arrays.asList(
+                    ImmutableMap.of("general.useragent.override", "Foo/1.0", "network.http.max-connections", 100, "privacy.resistFingerprinting", true),
+                    Collections.singletonList("intl.accept_languages")), scriptExecutor.scriptArgs.get(0));
+            events.clear();
+            support.setContext(FirefoxContext.CHROME);
+            support.executePrivilegedScript("return 1");
+            assertEquals("no switch when already in chrome context", Arrays.asList("chrome", "get", "script"), events);
+            browserContext.set("content");
+            events.clear();
+            support.getPreference("general.useragent.override");
+            assertEquals("switched after context was changed elsewhere", Arrays.asList("get", "chrome", "script", "content"), events);
+            assertEquals("context from browser", FirefoxContext.CONTENT, support.getContext());
+        }
+    }
+
+    @Test
+    public void checkPreferenceValue() {
+        assertEquals(7, MozCommandSupport.checkPreferenceValue("a", (short) 7));
+        assertEquals(Integer.MAX_VALUE, MozCommandSupport.checkPreferenceValue("a", (long) Integer.MAX_VALUE));
+        for (Object value : Arrays.asList(1.5, Integer.MAX_VALUE + 1L, new Object())) {
+            try {
+                MozCommandSupport.checkPreferenceValue("a", value);
+                fail("should reject " + value);
+            } catch (IllegalArgumentException ignore) {
+            }
+        }
+    }
+
+    private static URL toUrl(NanoControl control) {
+        try {
+            return control.baseUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,4 +3,9 @@ document.addEventListener('DOMContentLoaded', function() {
     div.id = 'injected';
     div.innerText = 'Hello';
     document.body.append(div);
-});
\ No newline at end of file
+    const runtime = (typeof browser !== 'undefined' ? browser : chrome).runtime;
+    const root = document.documentElement;
+    const ready = (root.getAttribute('data-addon-ready') || '').split(/\s+/).filter(id => id);
+    ready.push(runtime.id);
+    root.setAttribute('data-addon-ready', ready.join(' '));
+});